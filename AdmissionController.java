@@ -0,0 +1,115 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Single gate for every way into a lane: new arrivals, type changes, transfers between
+// departments and the emergency override. Room is judged from the lanes' O(1) sizes;
+// only a patient who finds their lane full is handed to the admission policy.
+// PatientManagement holds this object's lock from the check until the patient is in the
+// lane, so two desks cannot both take the last place. As a queue listener it refills
+// places from the overflow waitlist the moment a call, removal or lane change frees them.
+public class AdmissionController implements QueueListener {
+    public enum Intent {
+        ARRIVAL,      // new patient at the desk
+        TYPE_CHANGE,  // patient already waiting moves lane; the total is unchanged
+        TRANSFER,     // patient waiting in another department
+        OVERRIDE      // staff-confirmed emergency; always admitted
+    }
+
+    private final PatientManagement patientManagement;
+    private final OverflowWaitlist waitlist = new OverflowWaitlist();
+    private final AtomicLongArray outcomes = new AtomicLongArray(AdmissionDecision.Outcome.values().length);
+    private final AtomicLong promoted = new AtomicLong();
+    private final AtomicLong duplicatesFlagged = new AtomicLong();
+    private volatile AdmissionPolicy policy = new DivertWhenFullPolicy();
+
+    AdmissionController(PatientManagement patientManagement) {
+        this.patientManagement = patientManagement;
+    }
+
+    // reject | divert | waitlist, each optionally :<n> to let emergencies n places over the limit
+    static AdmissionPolicy parsePolicy(String value) {
+        String[] parts = value.toLowerCase().split(":");
+        AdmissionPolicy policy;
+        switch (parts[0]) {
+            case "reject": policy = new RejectWhenFullPolicy(); break;
+            case "divert": policy = new DivertWhenFullPolicy(); break;
+            case "waitlist": policy = new WaitlistWhenFullPolicy(); break;
+            default: throw new IllegalArgumentException("Unknown admission policy: " + value);
+        }
+        return parts.length > 1 ? new EmergencyOverLimitPolicy(policy, Integer.parseInt(parts[1])) : policy;
+    }
+
+    // Callers hold this object's lock until the decision has been carried out
+    AdmissionDecision decide(Patient patient, PatientType requested, Intent intent) {
+        if (hasRoom(requested, intent)) {
+            return AdmissionDecision.admitted(requested);
+        }
+        if (intent == Intent.OVERRIDE) {
+            return AdmissionDecision.overLimit(requested, "emergency override");
+        }
+        return policy.onFull(patient, requested, intent, this);
+    }
+
+    // A possible duplicate is a question to staff, not an outcome: the arrival is counted
+    // once, when it is admitted again with the duplicate check waived or not at all
+    void record(AdmissionDecision decision) {
+        if (decision.getOutcome() == AdmissionDecision.Outcome.DUPLICATE) {
+            duplicatesFlagged.incrementAndGet();
+            return;
+        }
+        outcomes.incrementAndGet(decision.getOutcome().ordinal());
+    }
+
+    @Override
+    public void onPatientCalled(Patient patient) { promoteWaitlisted(); }
+
+    @Override
+    public void onPatientRemoved(Patient patient) { promoteWaitlisted(); }
+
+    @Override
+    public void onPatientTypeChanged(Patient patient, PatientType oldType) { promoteWaitlisted(); }
+
+    // Moves held patients into every free place, most urgent lane first and oldest first
+    // within a lane. They keep their original arrival time, so they are served in the
+    // order they came in.
+    void promoteWaitlisted() {
+        if (waitlist.isEmpty()) return;
+        synchronized (this) {
+            for (PatientType type : PatientManagement.PRIORITY_ORDER) {
+                while (hasRoom(type, Intent.ARRIVAL)) {
+                    Patient patient = waitlist.poll(type);
+                    if (patient == null) break;
+                    if (patientManagement.queuePatient(patient)) {
+                        promoted.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean hasRoom(PatientType type, Intent intent) {
+        return !isLaneFull(type) && (intent == Intent.TYPE_CHANGE || !isTotalFull());
+    }
+
+    public boolean isLaneFull(PatientType type) {
+        return QueueConfig.isAtCapacity(getCount(type), QueueConfig.getMaxCapacityForType(type));
+    }
+
+    public boolean isTotalFull() {
+        return QueueConfig.isAtCapacity(getTotalCount(), QueueConfig.MAX_TOTAL_CAPACITY);
+    }
+
+    public String fullReason(PatientType type, Intent intent) {
+        if (isLaneFull(type)) return type.name().toLowerCase() + " queue is at capacity";
+        return intent == Intent.TYPE_CHANGE ? null : "total capacity reached";
+    }
+
+    public int getCount(PatientType type) { return patientManagement.getCountByType(type); }
+    public int getTotalCount() { return patientManagement.getTotalPatientCount(); }
+    public long getOutcomeCount(AdmissionDecision.Outcome outcome) { return outcomes.get(outcome.ordinal()); }
+    public long getDuplicatesFlagged() { return duplicatesFlagged.get(); }
+    public long getPromotedCount() { return promoted.get(); }
+    public OverflowWaitlist getWaitlist() { return waitlist; }
+    public AdmissionPolicy getPolicy() { return policy; }
+    public void setPolicy(AdmissionPolicy policy) { this.policy = policy; }
+}
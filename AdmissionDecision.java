@@ -0,0 +1,104 @@
+import java.util.Collections;
+import java.util.List;
+
+// Result of asking the AdmissionController to let a patient into a lane
+public final class AdmissionDecision {
+    public enum Outcome {
+        ADMITTED("admitted"),
+        DIVERTED("diverted"),
+        OVER_LIMIT("admitted over limit"),
+        WAITLISTED("waitlisted"),
+        DUPLICATE("possible duplicate"),
+        REJECTED("rejected");
+
+        private final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    private final Outcome outcome;
+    private final PatientType requested;
+    private final PatientType lane;
+    private final String shardKey;
+    private final PatientManagement shard;
+    private final String reason;
+    private final List<Patient> duplicates;
+
+    private AdmissionDecision(Outcome outcome, PatientType requested, PatientType lane,
+                              String shardKey, PatientManagement shard, String reason) {
+        this(outcome, requested, lane, shardKey, shard, reason, Collections.emptyList());
+    }
+
+    private AdmissionDecision(Outcome outcome, PatientType requested, PatientType lane,
+                              String shardKey, PatientManagement shard, String reason, List<Patient> duplicates) {
+        this.outcome = outcome;
+        this.requested = requested;
+        this.lane = lane;
+        this.shardKey = shardKey;
+        this.shard = shard;
+        this.reason = reason;
+        this.duplicates = duplicates;
+    }
+
+    public static AdmissionDecision admitted(PatientType type) {
+        return new AdmissionDecision(Outcome.ADMITTED, type, type, null, null, null);
+    }
+
+    public static AdmissionDecision diverted(PatientType requested, PatientType lane, String reason) {
+        return new AdmissionDecision(Outcome.DIVERTED, requested, lane, null, null, reason);
+    }
+
+    // Same lane in another department; the receiving shard makes its own decision
+    public static AdmissionDecision divertedToShard(PatientType type, String shardKey, PatientManagement shard, String reason) {
+        return new AdmissionDecision(Outcome.DIVERTED, type, type, shardKey, shard, reason);
+    }
+
+    public static AdmissionDecision overLimit(PatientType type, String reason) {
+        return new AdmissionDecision(Outcome.OVER_LIMIT, type, type, null, null, reason);
+    }
+
+    public static AdmissionDecision waitlisted(PatientType type, String reason) {
+        return new AdmissionDecision(Outcome.WAITLISTED, type, type, null, null, reason);
+    }
+
+    // Not queued: staff should confirm this is not someone already waiting
+    public static AdmissionDecision duplicate(PatientType requested, List<Patient> duplicates) {
+        Patient first = duplicates.get(0);
+        return new AdmissionDecision(Outcome.DUPLICATE, requested, null, null, null,
+            "looks like waiting patient " + first.getName(), duplicates);
+    }
+
+    public static AdmissionDecision rejected(PatientType requested, String reason) {
+        return new AdmissionDecision(Outcome.REJECTED, requested, null, null, null, reason);
+    }
+
+    // True if the patient joins a lane of the department that made the decision
+    public boolean isQueuedHere() {
+        return shard == null && (outcome == Outcome.ADMITTED || outcome == Outcome.DIVERTED || outcome == Outcome.OVER_LIMIT);
+    }
+
+    public String describe() {
+        StringBuilder text = new StringBuilder(outcome.getLabel());
+        if (shardKey != null) {
+            text.append(" to ").append(shardKey);
+        } else if (lane != null) {
+            text.append(" to ").append(lane.getQueueName());
+        }
+        if (reason != null) {
+            text.append(" (").append(reason).append(')');
+        }
+        return text.toString();
+    }
+
+    public Outcome getOutcome() { return outcome; }
+    public PatientType getRequested() { return requested; }
+    public PatientType getLane() { return lane; }
+    public String getShardKey() { return shardKey; }
+    PatientManagement getShard() { return shard; }
+    public String getReason() { return reason; }
+    public List<Patient> getDuplicates() { return duplicates; }
+}
@@ -0,0 +1,8 @@
+// Decides what happens to a patient whose lane, or the whole department, is full. A lane
+// with room never reaches the policy, so policies only run on the overflow path.
+public interface AdmissionPolicy {
+    String getName();
+
+    AdmissionDecision onFull(Patient patient, PatientType requested, AdmissionController.Intent intent,
+                             AdmissionController admission);
+}
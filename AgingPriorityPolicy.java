@@ -0,0 +1,41 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+// Effective priority improves by one level for every `minutesPerLevel` spent waiting,
+// up to the top priority, so a steady flow of emergencies cannot starve other lanes
+public class AgingPriorityPolicy implements SchedulingPolicy {
+    private static final int TOP_PRIORITY = PatientType.EMERGENCY.getPriority();
+
+    private final double minutesPerLevel;
+
+    public AgingPriorityPolicy() {
+        this(QueueConfig.AGING_MINUTES_PER_LEVEL);
+    }
+
+    public AgingPriorityPolicy(double minutesPerLevel) {
+        if (minutesPerLevel <= 0) {
+            throw new IllegalArgumentException("Aging interval must be positive.");
+        }
+        this.minutesPerLevel = minutesPerLevel;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("Aging (+1 level every %.0f min)", minutesPerLevel);
+    }
+
+    @Override
+    public Comparator<Patient> serviceOrder(LocalDateTime now) {
+        // Keys are computed for the lane heads only, at the moment of the call
+        return Comparator.comparingDouble((Patient p) -> getEffectivePriority(p, now))
+            .thenComparing(PatientLane.ARRIVAL_ORDER);
+    }
+
+    public double getEffectivePriority(Patient patient, LocalDateTime now) {
+        double waitedMinutes = Math.max(0, Duration.between(patient.getArrivalTime(), now).toMillis() / 60_000.0);
+        return Math.max(TOP_PRIORITY, patient.getType().getPriority() - waitedMinutes / minutesPerLevel);
+    }
+
+    public double getMinutesPerLevel() { return minutesPerLevel; }
+}
@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.List;
+
+// Reports over the patient archive. Segment files are independent, so they are read and
+// aggregated in parallel on the common fork/join pool, one partial report per split.
+public class ArchiveAnalytics {
+    private static final EnumSet<ArchiveSegmentFile.Column> REPORT_COLUMNS = EnumSet.of(
+        ArchiveSegmentFile.Column.ARRIVAL, ArchiveSegmentFile.Column.CALLED,
+        ArchiveSegmentFile.Column.TYPE, ArchiveSegmentFile.Column.AGE);
+
+    private final PatientArchive archive;
+    private long lastScanNanos;
+
+    public ArchiveAnalytics(PatientArchive archive) {
+        this.archive = archive;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || args[0].equals("--help")) {
+            System.out.println(usage());
+            return;
+        }
+        try (PatientArchive archive = new PatientArchive(Paths.get(args[0]), Clock.systemDefaultZone())) {
+            LocalDate from = null;
+            LocalDate to = null;
+            for (int i = 1; i + 1 < args.length; i += 2) {
+                if (args[i].equals("--from")) from = LocalDate.parse(args[i + 1]);
+                else if (args[i].equals("--to")) to = LocalDate.parse(args[i + 1]);
+                else throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            ArchiveAnalytics analytics = new ArchiveAnalytics(archive);
+            analytics.analyze(from, to).print();
+            System.out.println(Colors.WHITE + "\nScanned " + archive.getSegmentFiles().size() + " segment(s) in " +
+                              String.format("%.2f", analytics.getLastScanNanos() / 1e9) + " s" + Colors.RESET);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.out.println(Colors.RED + "Error: " + e.getMessage() + Colors.RESET);
+            System.out.println(usage());
+        } catch (IOException e) {
+            System.out.println(Colors.RED + "Error reading archive: " + e.getMessage() + Colors.RESET);
+        }
+    }
+
+    public static String usage() {
+        return String.join("\n",
+            "Usage: java Main --analyze <archive-dir> [--from yyyy-MM-dd] [--to yyyy-MM-dd]",
+            "",
+            "Reports on patients called between the dates (inclusive; default: everything archived):",
+            "arrivals by hour of day, type mix by month, wait times by age band and emergency surges.");
+    }
+
+    // Patients called from the start of `from` to the end of `to`; null means unbounded
+    public ArchiveReport analyze(LocalDate from, LocalDate to) throws IOException {
+        ZoneId zone = archive.getZone();
+        long fromMillis = from == null ? Long.MIN_VALUE : from.atStartOfDay(zone).toInstant().toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE : to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+        long start = System.nanoTime();
+        List<Path> segments = archive.getSegmentFiles();
+        PatientArchive.Segment open = archive.getOpenSegment();
+        ArchiveReport report;
+        try {
+            report = segments.parallelStream().collect(
+                () -> new ArchiveReport(zone),
+                (partial, file) -> partial.scan(read(file, fromMillis, toMillis), fromMillis, toMillis),
+                ArchiveReport::merge);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        report.scan(open, fromMillis, toMillis);
+        lastScanNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    // Only the columns the report uses, from blocks whose call times overlap the range
+    private static PatientArchive.Segment read(Path file, long fromMillis, long toMillis) {
+        try {
+            return ArchiveSegmentFile.read(file, REPORT_COLUMNS, fromMillis, toMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getLastScanNanos() { return lastScanNanos; }
+}
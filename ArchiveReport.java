@@ -0,0 +1,252 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Aggregations over served patients. Each worker fills its own report from the segments it
+// scans and the partial reports are merged at the end, so scanning needs no locking.
+public class ArchiveReport {
+    static final int[] AGE_BAND_STARTS = {0, 18, 40, 65, 75};
+    private static final String[] AGE_BAND_NAMES = {"0-17", "18-39", "40-64", "65-74", "75+"};
+    private static final int MAX_TRACKED_WAIT_MINUTES = 24 * 60;
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    private static final int TYPES = PatientType.values().length;
+
+    private final LocalOffsets offsets;
+    private long served;
+    private final long[] arrivalsByHour = new long[24];
+    private final Map<YearMonth, long[]> typesByMonth = new TreeMap<>();
+    private final long[][] waitMinutesByBand = new long[AGE_BAND_STARTS.length][MAX_TRACKED_WAIT_MINUTES + 1];
+    private final long[] waitTotalMillisByBand = new long[AGE_BAND_STARTS.length];
+    private final Map<Long, int[]> emergenciesByHour = new HashMap<>();
+
+    // Month of the last row seen; rows arrive in time order, so this rarely changes
+    private long cachedDay = Long.MIN_VALUE;
+    private long[] cachedMonthCounts;
+
+    ArchiveReport(ZoneId zone) {
+        this.offsets = new LocalOffsets(zone);
+    }
+
+    // Adds the rows of one segment that were called within [fromMillis, toMillis)
+    void scan(PatientArchive.Segment segment, long fromMillis, long toMillis) {
+        int emergency = PatientType.EMERGENCY.ordinal();
+        for (int i = 0; i < segment.size; i++) {
+            long called = segment.calledMillis[i];
+            if (called < fromMillis || called >= toMillis) continue;
+
+            long arrival = segment.arrivalMillis[i];
+            long localArrival = arrival + offsets.offsetMillis(arrival);
+            int type = segment.types[i];
+            served++;
+            arrivalsByHour[(int) Math.floorMod(Math.floorDiv(localArrival, MILLIS_PER_HOUR), 24L)]++;
+            monthCounts(Math.floorDiv(localArrival, MILLIS_PER_DAY))[type]++;
+
+            int band = ageBand(segment.ages[i] & 0xFF);
+            long wait = Math.max(0, called - arrival);
+            waitMinutesByBand[band][(int) Math.min(wait / 60_000, MAX_TRACKED_WAIT_MINUTES)]++;
+            waitTotalMillisByBand[band] += wait;
+
+            if (type == emergency) {
+                emergenciesByHour.computeIfAbsent(Math.floorDiv(localArrival, MILLIS_PER_HOUR), h -> new int[1])[0]++;
+            }
+        }
+    }
+
+    private long[] monthCounts(long epochDay) {
+        if (epochDay != cachedDay) {
+            cachedDay = epochDay;
+            cachedMonthCounts = typesByMonth.computeIfAbsent(YearMonth.from(LocalDate.ofEpochDay(epochDay)), m -> new long[TYPES]);
+        }
+        return cachedMonthCounts;
+    }
+
+    private static int ageBand(int age) {
+        int band = AGE_BAND_STARTS.length - 1;
+        while (age < AGE_BAND_STARTS[band]) band--;
+        return band;
+    }
+
+    // Folds another worker's report into this one
+    ArchiveReport merge(ArchiveReport other) {
+        served += other.served;
+        for (int h = 0; h < 24; h++) {
+            arrivalsByHour[h] += other.arrivalsByHour[h];
+        }
+        for (Map.Entry<YearMonth, long[]> entry : other.typesByMonth.entrySet()) {
+            long[] counts = typesByMonth.computeIfAbsent(entry.getKey(), m -> new long[TYPES]);
+            for (int t = 0; t < TYPES; t++) {
+                counts[t] += entry.getValue()[t];
+            }
+        }
+        for (int band = 0; band < AGE_BAND_STARTS.length; band++) {
+            for (int m = 0; m <= MAX_TRACKED_WAIT_MINUTES; m++) {
+                waitMinutesByBand[band][m] += other.waitMinutesByBand[band][m];
+            }
+            waitTotalMillisByBand[band] += other.waitTotalMillisByBand[band];
+        }
+        for (Map.Entry<Long, int[]> entry : other.emergenciesByHour.entrySet()) {
+            emergenciesByHour.computeIfAbsent(entry.getKey(), h -> new int[1])[0] += entry.getValue()[0];
+        }
+        return this;
+    }
+
+    // Getters
+
+    public long getServed() { return served; }
+    public long getArrivalsInHour(int hour) { return arrivalsByHour[hour]; }
+    public Map<YearMonth, long[]> getTypesByMonth() { return typesByMonth; }
+
+    public long getServedInBand(int band) {
+        long count = 0;
+        for (long bucket : waitMinutesByBand[band]) count += bucket;
+        return count;
+    }
+
+    public double getAverageWaitMinutes(int band) {
+        long count = getServedInBand(band);
+        return count == 0 ? 0 : waitTotalMillisByBand[band] / 60_000.0 / count;
+    }
+
+    public int getWaitPercentileMinutes(int band, double percentile) {
+        long count = getServedInBand(band);
+        if (count == 0) return 0;
+        long target = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int minute = 0; minute <= MAX_TRACKED_WAIT_MINUTES; minute++) {
+            seen += waitMinutesByBand[band][minute];
+            if (seen >= target) return minute;
+        }
+        return MAX_TRACKED_WAIT_MINUTES;
+    }
+
+    // Hours whose emergency arrivals exceed the mean by four standard deviations (and at
+    // least three patients), measured over every hour from the first to the last emergency.
+    // Three deviations would still flag a dozen ordinary hours in a year of data.
+    public List<Surge> getEmergencySurges() {
+        List<Surge> surges = new ArrayList<>();
+        if (emergenciesByHour.isEmpty()) return surges;
+
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        double sum = 0;
+        double sumSquares = 0;
+        for (Map.Entry<Long, int[]> entry : emergenciesByHour.entrySet()) {
+            first = Math.min(first, entry.getKey());
+            last = Math.max(last, entry.getKey());
+            int count = entry.getValue()[0];
+            sum += count;
+            sumSquares += (double) count * count;
+        }
+        long hours = last - first + 1;
+        double mean = sum / hours;
+        double deviation = Math.sqrt(Math.max(0, sumSquares / hours - mean * mean));
+        double threshold = Math.max(3, mean + 4 * deviation);
+
+        for (Map.Entry<Long, int[]> entry : emergenciesByHour.entrySet()) {
+            if (entry.getValue()[0] >= threshold) {
+                LocalDateTime start = LocalDateTime.ofEpochSecond(entry.getKey() * 3600, 0, ZoneOffset.UTC);
+                surges.add(new Surge(start, entry.getValue()[0], mean));
+            }
+        }
+        surges.sort((a, b) -> a.getHourStart().compareTo(b.getHourStart()));
+        return surges;
+    }
+
+    public static final class Surge {
+        private final LocalDateTime hourStart;
+        private final int emergencies;
+        private final double typicalPerHour;
+
+        Surge(LocalDateTime hourStart, int emergencies, double typicalPerHour) {
+            this.hourStart = hourStart;
+            this.emergencies = emergencies;
+            this.typicalPerHour = typicalPerHour;
+        }
+
+        public LocalDateTime getHourStart() { return hourStart; }
+        public int getEmergencies() { return emergencies; }
+        public double getTypicalPerHour() { return typicalPerHour; }
+    }
+
+    public void print() {
+        System.out.println("\n" + Colors.CYAN + Colors.BOLD + "=== HISTORICAL REPORT ===" + Colors.RESET);
+        System.out.println(Colors.WHITE + "Patients served: " + served + Colors.RESET);
+        if (served == 0) return;
+
+        System.out.println(Colors.WHITE + "\nArrivals by Hour of Day:" + Colors.RESET);
+        long busiest = 1;
+        for (long count : arrivalsByHour) busiest = Math.max(busiest, count);
+        for (int hour = 0; hour < 24; hour++) {
+            int bar = (int) Math.round(40.0 * arrivalsByHour[hour] / busiest);
+            System.out.println(Colors.BLUE + String.format("  %02d:00 %8d ", hour, arrivalsByHour[hour]) +
+                              "#".repeat(bar) + Colors.RESET);
+        }
+
+        System.out.println(Colors.WHITE + "\nType Mix by Month:" + Colors.RESET);
+        for (Map.Entry<YearMonth, long[]> entry : typesByMonth.entrySet()) {
+            long total = 0;
+            for (long count : entry.getValue()) total += count;
+            StringBuilder line = new StringBuilder("  " + entry.getKey() + String.format(" %8d", total));
+            for (PatientType type : PatientType.values()) {
+                long count = entry.getValue()[type.ordinal()];
+                line.append(type.getColor()).append(String.format("  %s %5.1f%%", type.name(), 100.0 * count / total)).append(Colors.RESET);
+            }
+            System.out.println(line);
+        }
+
+        System.out.println(Colors.WHITE + "\nWait Times by Age Band (minutes, avg / p50 / p90 / p99):" + Colors.RESET);
+        for (int band = 0; band < AGE_BAND_STARTS.length; band++) {
+            long count = getServedInBand(band);
+            String summary = count == 0 ? "no patients served" : String.format("%.1f / %d / %d / %d  (%d patients)",
+                getAverageWaitMinutes(band), getWaitPercentileMinutes(band, 0.50),
+                getWaitPercentileMinutes(band, 0.90), getWaitPercentileMinutes(band, 0.99), count);
+            System.out.println(Colors.PURPLE + String.format("  %-6s ", AGE_BAND_NAMES[band]) + summary + Colors.RESET);
+        }
+
+        List<Surge> surges = getEmergencySurges();
+        System.out.println(Colors.WHITE + "\nEmergency Surges:" + Colors.RESET);
+        if (surges.isEmpty()) {
+            System.out.println(Colors.GREEN + "  None detected." + Colors.RESET);
+        }
+        for (Surge surge : surges) {
+            System.out.println(Colors.RED + "  " + surge.getHourStart().toLocalDate() + " " +
+                              String.format("%02d:00", surge.getHourStart().getHour()) + ": " + surge.getEmergencies() +
+                              " emergencies (typical " + String.format("%.1f", surge.getTypicalPerHour()) + "/h)" + Colors.RESET);
+        }
+    }
+
+    // Zone offset for an instant, recomputed only when a daylight-saving transition is crossed
+    private static final class LocalOffsets {
+        private final ZoneRules rules;
+        private long validFrom = Long.MAX_VALUE;
+        private long validUntil = Long.MIN_VALUE;
+        private long offsetMillis;
+
+        LocalOffsets(ZoneId zone) {
+            this.rules = zone.getRules();
+        }
+
+        long offsetMillis(long epochMillis) {
+            if (epochMillis < validFrom || epochMillis >= validUntil) {
+                Instant instant = Instant.ofEpochMilli(epochMillis);
+                offsetMillis = rules.getOffset(instant).getTotalSeconds() * 1000L;
+                ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+                ZoneOffsetTransition next = rules.nextTransition(instant);
+                validFrom = previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000;
+                validUntil = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+            }
+            return offsetMillis;
+        }
+    }
+}
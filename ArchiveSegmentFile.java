@@ -0,0 +1,314 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+// Columnar layout of one archive segment. Rows are cut into blocks of BLOCK_ROWS, and each
+// column is stored separately and encoded for its data: times and sequences as varint
+// deltas, types packed two bits per row, names as ids into a per-segment dictionary.
+// A directory at the front holds each block's min/max arrival, call time and age and the
+// types present, so a scan reads only the columns it needs from the blocks that can match.
+//
+//   header:    magic, format, rows, blocks, dictionary offset
+//   directory: per block rows, min/max arrival, min/max called, min/max age, type mask,
+//              then offset and length of each column chunk
+//   columns:   column by column, block chunks back to back
+//   names:     count, then each distinct name
+final class ArchiveSegmentFile {
+    static final int MAGIC = 0x50415243; // "PARC"
+    static final int FORMAT = 1;
+    static final int BLOCK_ROWS = 1024;
+
+    enum Column { SEQUENCE, ARRIVAL, CALLED, TYPE, AGE, NAME }
+
+    static final EnumSet<Column> ALL_COLUMNS = EnumSet.allOf(Column.class);
+    private static final Column[] COLUMNS = Column.values();
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8;
+    private static final int DIRECTORY_ENTRY_BYTES = 4 + 4 * 8 + 3 + COLUMNS.length * (8 + 4);
+    private static final int TYPE_BITS = 2; // three patient types
+
+    private ArchiveSegmentFile() {}
+
+    // What the directory says about one block
+    static final class Block {
+        int rows;
+        long minArrival = Long.MAX_VALUE;
+        long maxArrival = Long.MIN_VALUE;
+        long minCalled = Long.MAX_VALUE;
+        long maxCalled = Long.MIN_VALUE;
+        int minAge = Integer.MAX_VALUE;
+        int maxAge = Integer.MIN_VALUE;
+        int typeMask;
+        final long[] offsets = new long[COLUMNS.length];
+        final int[] lengths = new int[COLUMNS.length];
+
+        boolean mayContainCalled(long fromMillis, long toMillis) {
+            return maxCalled >= fromMillis && minCalled < toMillis;
+        }
+    }
+
+    static void write(Path target, PatientArchive.Segment segment) throws IOException {
+        int blockCount = (segment.size + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        Block[] blocks = new Block[blockCount];
+        byte[][][] chunks = new byte[COLUMNS.length][blockCount][];
+        Map<String, Integer> nameIds = new HashMap<>();
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        DataOutputStream nameOut = new DataOutputStream(names);
+
+        for (int b = 0; b < blockCount; b++) {
+            int from = b * BLOCK_ROWS;
+            int to = Math.min(segment.size, from + BLOCK_ROWS);
+            Block block = new Block();
+            block.rows = to - from;
+            for (int i = from; i < to; i++) {
+                block.minArrival = Math.min(block.minArrival, segment.arrivalMillis[i]);
+                block.maxArrival = Math.max(block.maxArrival, segment.arrivalMillis[i]);
+                block.minCalled = Math.min(block.minCalled, segment.calledMillis[i]);
+                block.maxCalled = Math.max(block.maxCalled, segment.calledMillis[i]);
+                int age = segment.ages[i] & 0xFF;
+                block.minAge = Math.min(block.minAge, age);
+                block.maxAge = Math.max(block.maxAge, age);
+                block.typeMask |= 1 << segment.types[i];
+            }
+            blocks[b] = block;
+
+            chunks[Column.SEQUENCE.ordinal()][b] = encodeDeltas(segment.sequences, from, to);
+            chunks[Column.ARRIVAL.ordinal()][b] = encodeDeltas(segment.arrivalMillis, from, to);
+            chunks[Column.CALLED.ordinal()][b] = encodeDeltas(segment.calledMillis, from, to);
+            chunks[Column.TYPE.ordinal()][b] = packTypes(segment.types, from, to);
+            chunks[Column.AGE.ordinal()][b] = Arrays.copyOfRange(segment.ages, from, to);
+
+            ByteArrayOutputStream refs = new ByteArrayOutputStream(block.rows * 2);
+            for (int i = from; i < to; i++) {
+                Integer id = nameIds.get(segment.names[i]);
+                if (id == null) {
+                    id = nameIds.size();
+                    nameIds.put(segment.names[i], id);
+                    nameOut.writeUTF(segment.names[i]);
+                }
+                writeVarLong(refs, id);
+            }
+            chunks[Column.NAME.ordinal()][b] = refs.toByteArray();
+        }
+
+        long offset = HEADER_BYTES + (long) blockCount * DIRECTORY_ENTRY_BYTES;
+        for (Column column : COLUMNS) {
+            for (int b = 0; b < blockCount; b++) {
+                blocks[b].offsets[column.ordinal()] = offset;
+                blocks[b].lengths[column.ordinal()] = chunks[column.ordinal()][b].length;
+                offset += chunks[column.ordinal()][b].length;
+            }
+        }
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(segment.size);
+            out.writeInt(blockCount);
+            out.writeLong(offset);
+            for (Block block : blocks) {
+                out.writeInt(block.rows);
+                out.writeLong(block.minArrival);
+                out.writeLong(block.maxArrival);
+                out.writeLong(block.minCalled);
+                out.writeLong(block.maxCalled);
+                out.writeByte(block.minAge);
+                out.writeByte(block.maxAge);
+                out.writeByte(block.typeMask);
+                for (Column column : COLUMNS) {
+                    out.writeLong(block.offsets[column.ordinal()]);
+                    out.writeInt(block.lengths[column.ordinal()]);
+                }
+            }
+            for (Column column : COLUMNS) {
+                for (int b = 0; b < blockCount; b++) {
+                    out.write(chunks[column.ordinal()][b]);
+                }
+            }
+            out.writeInt(nameIds.size());
+            names.writeTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Rows of the blocks that may hold patients called in [fromMillis, toMillis). Only the
+    // requested columns are read and filled in; callers still filter individual rows.
+    static PatientArchive.Segment read(Path file, EnumSet<Column> columns, long fromMillis, long toMillis) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) throw new IOException("Not a patient archive segment: " + file);
+            int format = header.getInt();
+            if (format != FORMAT) throw new IOException("Unsupported archive segment format " + format + ": " + file);
+            header.getInt(); // total rows
+            int blockCount = header.getInt();
+            long dictionaryOffset = header.getLong();
+
+            Block[] blocks = readDirectory(channel, blockCount);
+            boolean[] selected = new boolean[blockCount];
+            int rows = 0;
+            int first = -1;
+            int last = -1;
+            for (int b = 0; b < blockCount; b++) {
+                if (blocks[b].mayContainCalled(fromMillis, toMillis)) {
+                    selected[b] = true;
+                    rows += blocks[b].rows;
+                    if (first < 0) first = b;
+                    last = b;
+                }
+            }
+
+            PatientArchive.Segment segment = new PatientArchive.Segment(columns, rows);
+            if (rows == 0) return segment;
+
+            String[] dictionary = columns.contains(Column.NAME)
+                ? readDictionary(channel, dictionaryOffset) : null;
+            for (Column column : columns) {
+                // Selected blocks are usually adjacent, so one read covers the column
+                long start = blocks[first].offsets[column.ordinal()];
+                long end = blocks[last].offsets[column.ordinal()] + blocks[last].lengths[column.ordinal()];
+                ByteBuffer data = readFully(channel, start, (int) (end - start));
+                int row = 0;
+                for (int b = first; b <= last; b++) {
+                    if (!selected[b]) continue;
+                    data.position((int) (blocks[b].offsets[column.ordinal()] - start));
+                    decode(column, data, blocks[b].rows, segment, row, dictionary);
+                    row += blocks[b].rows;
+                }
+            }
+            segment.size = rows;
+            return segment;
+        }
+    }
+
+    private static Block[] readDirectory(FileChannel channel, int blockCount) throws IOException {
+        ByteBuffer directory = readFully(channel, HEADER_BYTES, blockCount * DIRECTORY_ENTRY_BYTES);
+        Block[] blocks = new Block[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            Block block = new Block();
+            block.rows = directory.getInt();
+            block.minArrival = directory.getLong();
+            block.maxArrival = directory.getLong();
+            block.minCalled = directory.getLong();
+            block.maxCalled = directory.getLong();
+            block.minAge = directory.get() & 0xFF;
+            block.maxAge = directory.get() & 0xFF;
+            block.typeMask = directory.get() & 0xFF;
+            for (Column column : COLUMNS) {
+                block.offsets[column.ordinal()] = directory.getLong();
+                block.lengths[column.ordinal()] = directory.getInt();
+            }
+            blocks[b] = block;
+        }
+        return blocks;
+    }
+
+    private static String[] readDictionary(FileChannel channel, long offset) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset)), 64 * 1024));
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+
+    private static void decode(Column column, ByteBuffer data, int rows, PatientArchive.Segment segment,
+                               int row, String[] dictionary) {
+        switch (column) {
+            case SEQUENCE: decodeDeltas(data, rows, segment.sequences, row); break;
+            case ARRIVAL: decodeDeltas(data, rows, segment.arrivalMillis, row); break;
+            case CALLED: decodeDeltas(data, rows, segment.calledMillis, row); break;
+            case TYPE: unpackTypes(data, rows, segment.types, row); break;
+            case AGE: data.get(segment.ages, row, rows); break;
+            case NAME:
+                for (int i = 0; i < rows; i++) {
+                    segment.names[row + i] = dictionary[(int) readVarLong(data)];
+                }
+                break;
+        }
+    }
+
+    // Each value as the zigzag-encoded difference from the previous one in the block
+    private static byte[] encodeDeltas(long[] values, int from, int to) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((to - from) * 3);
+        long previous = 0;
+        for (int i = from; i < to; i++) {
+            long delta = values[i] - previous;
+            writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            previous = values[i];
+        }
+        return out.toByteArray();
+    }
+
+    private static void decodeDeltas(ByteBuffer data, int rows, long[] values, int row) {
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            long zigzag = readVarLong(data);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[row + i] = previous;
+        }
+    }
+
+    private static byte[] packTypes(byte[] types, int from, int to) {
+        int perByte = 8 / TYPE_BITS;
+        byte[] packed = new byte[(to - from + perByte - 1) / perByte];
+        for (int i = from; i < to; i++) {
+            int index = i - from;
+            packed[index / perByte] |= types[i] << (index % perByte * TYPE_BITS);
+        }
+        return packed;
+    }
+
+    private static void unpackTypes(ByteBuffer data, int rows, byte[] types, int row) {
+        int perByte = 8 / TYPE_BITS;
+        int mask = (1 << TYPE_BITS) - 1;
+        int current = 0;
+        for (int i = 0; i < rows; i++) {
+            if (i % perByte == 0) current = data.get();
+            types[row + i] = (byte) ((current >>> (i % perByte * TYPE_BITS)) & mask);
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer data) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Archive segment is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
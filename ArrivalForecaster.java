@@ -0,0 +1,94 @@
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class ArrivalForecaster {
+    private final Clock clock;
+    private final Map<PatientType, RateEstimate> arrivalRates = new EnumMap<>(PatientType.class);
+    private final Map<PatientType, RateEstimate> serviceRates = new EnumMap<>(PatientType.class);
+    private final RateEstimate overallServiceRate = new RateEstimate();
+
+    public ArrivalForecaster() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public ArrivalForecaster(Clock clock) {
+        this.clock = clock;
+        for (PatientType type : PatientType.values()) {
+            arrivalRates.put(type, new RateEstimate());
+            serviceRates.put(type, new RateEstimate());
+        }
+    }
+
+    public synchronized void recordArrival(PatientType type) {
+        arrivalRates.get(type).observe(clock.millis());
+    }
+
+    public synchronized void recordCall(PatientType type) {
+        long now = clock.millis();
+        serviceRates.get(type).observe(now);
+        overallServiceRate.observe(now);
+    }
+
+    // Patients per minute
+    public synchronized double getArrivalRate(PatientType type) {
+        return arrivalRates.get(type).perMinute(clock.millis());
+    }
+
+    public synchronized double getServiceRate(PatientType type) {
+        return serviceRates.get(type).perMinute(clock.millis());
+    }
+
+    public synchronized double getOverallServiceRate() {
+        return overallServiceRate.perMinute(clock.millis());
+    }
+
+    // Minutes until the lane reaches max at the current net inflow; infinite if it is not filling
+    public double getMinutesToCapacity(PatientType type, int current, int max) {
+        if (current >= max) return 0;
+        double netInflow = getArrivalRate(type) - getServiceRate(type);
+        if (netInflow <= 0) return Double.POSITIVE_INFINITY;
+        return (max - current) / netInflow;
+    }
+
+    // Minutes a new arrival would wait behind `patientsAhead` at the overall call rate
+    public double getExpectedWaitMinutes(int patientsAhead) {
+        if (patientsAhead <= 0) return 0;
+        double rate = getOverallServiceRate();
+        if (rate <= 0) return Double.POSITIVE_INFINITY;
+        return patientsAhead / rate;
+    }
+
+    public boolean isForecastToFill(PatientType type, int current, int max) {
+        return getMinutesToCapacity(type, current, max) <= QueueConfig.FORECAST_HORIZON_MINUTES;
+    }
+
+    public static String formatMinutes(double minutes) {
+        if (Double.isInfinite(minutes) || Double.isNaN(minutes)) return "n/a";
+        if (minutes < 1) return "<1 min";
+        if (minutes >= 120) return String.format("~%.1f h", minutes / 60);
+        return String.format("~%.0f min", minutes);
+    }
+
+    // Exponentially weighted mean of the gap between events
+    private static class RateEstimate {
+        private double meanIntervalMillis = -1;
+        private long lastEventMillis = -1;
+
+        void observe(long now) {
+            if (lastEventMillis >= 0) {
+                double interval = Math.max(1, now - lastEventMillis);
+                meanIntervalMillis = meanIntervalMillis < 0 ? interval
+                    : QueueConfig.FORECAST_SMOOTHING * interval + (1 - QueueConfig.FORECAST_SMOOTHING) * meanIntervalMillis;
+            }
+            lastEventMillis = now;
+        }
+
+        double perMinute(long now) {
+            if (meanIntervalMillis < 0) return 0;
+            // A quiet spell longer than the usual gap pulls the rate down without a new event
+            double interval = Math.max(meanIntervalMillis, now - lastEventMillis);
+            return 60_000.0 / interval;
+        }
+    }
+}
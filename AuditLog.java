@@ -0,0 +1,276 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Append-only trail of clinical changes as JSON lines: time, actor, action, patient and
+// before/after values. Callers only format the line and hand it to a background writer,
+// which writes whole batches through one buffer and rotates the file by size and by day.
+public class AuditLog implements QueueListener, Closeable {
+    static final String CURRENT_FILE = "audit.log";
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final long RETRY_MILLIS = 1000;
+    private static final int CLOSE_ATTEMPTS = 3;
+    private static final long OFFER_WAIT_MILLIS = 10;
+
+    private final Path directory;
+    private final String actor;
+    private final Clock clock;
+    private final TimestampFormatter timestamps;
+    private final long maxBytes;
+    private final BlockingQueue<String> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    // Owned by the writer thread; out is null after a failure until the file is reopened
+    private BufferedWriter out;
+    private long fileBytes;
+    private long rotateAtBytes;
+    private LocalDate fileDay;
+    private volatile IOException failure;
+    // Set while a failed batch is being retried; callers then stop waiting for room
+    private volatile boolean retrying;
+
+    private volatile boolean running = true;
+
+    public AuditLog(Path directory, String actor, Clock clock) throws IOException {
+        this(directory, actor, clock, DEFAULT_MAX_BYTES);
+    }
+
+    public AuditLog(Path directory, String actor, Clock clock, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.actor = actor;
+        this.clock = clock;
+        this.timestamps = TimestampFormatter.forClock(clock);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        openCurrentFile();
+
+        writer = new Thread(this::writeLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Queue listener callbacks
+
+    @Override
+    public void onPatientQueued(Patient patient) {
+        record("patient.queued", patient, "type", null, patient.getType().name());
+    }
+
+    @Override
+    public void onPatientCalled(Patient patient) {
+        record("patient.called", patient, null, null, null);
+    }
+
+    @Override
+    public void onPatientRemoved(Patient patient) {
+        record("patient.removed", patient, null, null, null);
+    }
+
+    @Override
+    public void onPatientTypeChanged(Patient patient, PatientType oldType) {
+        record("patient.type_changed", patient, "type", oldType.name(), patient.getType().name());
+    }
+
+    @Override
+    public void onNoteAdded(Patient patient, String note) {
+        record("patient.note_added", patient, "note", null, note);
+    }
+
+    // A change to one patient; field, before and after may be null
+    public void record(String action, Patient patient, String field, String before, String after) {
+        StringBuilder line = begin(action);
+        line.append(",\"seq\":").append(patient.getSequence()).append(",\"patient\":");
+        WaitingRoomFeed.appendJsonString(line, patient.getName());
+        appendOptional(line, "field", field);
+        appendOptional(line, "before", before);
+        appendOptional(line, "after", after);
+        enqueue(line);
+    }
+
+    // An action that is not about one patient, e.g. a bulk clear
+    public void record(String action, String detail) {
+        StringBuilder line = begin(action);
+        appendOptional(line, "detail", detail);
+        enqueue(line);
+    }
+
+    private StringBuilder begin(String action) {
+        StringBuilder line = new StringBuilder(160);
+        line.append("{\"time\":\"");
+        timestamps.appendNow(line);
+        line.append("\",\"actor\":");
+        WaitingRoomFeed.appendJsonString(line, actor);
+        line.append(",\"action\":\"").append(action).append('"');
+        return line;
+    }
+
+    private static void appendOptional(StringBuilder line, String key, String value) {
+        if (value == null) return;
+        line.append(",\"").append(key).append("\":");
+        WaitingRoomFeed.appendJsonString(line, value);
+    }
+
+    private void enqueue(StringBuilder line) {
+        line.append("}\n");
+        try {
+            // Waits briefly if the disk falls 16k records behind, then drops the record so a
+            // slow or failing disk never stops queue operations; drops show up as lost
+            boolean queued = retrying
+                ? pending.offer(line.toString())
+                : pending.offer(line.toString(), OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            if (!queued) {
+                lost.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            // The caller is being cancelled; the record is counted rather than waited for
+            lost.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        int closingAttempts = 0;
+        while (running || !pending.isEmpty() || !batch.isEmpty()) {
+            // A batch that failed is kept and retried, topped up with newer records
+            if (batch.size() < BATCH_SIZE) {
+                try {
+                    String first = batch.isEmpty() ? pending.poll(200, TimeUnit.MILLISECONDS) : pending.poll();
+                    if (first != null) batch.add(first);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                pending.drainTo(batch, BATCH_SIZE - batch.size());
+            }
+            if (batch.isEmpty() || writeBatch(batch)) {
+                batch.clear();
+                retrying = false;
+                continue;
+            }
+            retrying = true;
+            if (!running && ++closingAttempts >= CLOSE_ATTEMPTS) {
+                break;
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        // Only reached with records left when shutting down on a disk that keeps failing
+        lost.addAndGet(batch.size() + pending.size());
+        pending.clear();
+        closeQuietly();
+    }
+
+    // True once the whole batch is flushed. On failure the file is closed and reopened on
+    // the next attempt, which rewrites the batch; lines that reached the disk before the
+    // failure may then appear twice.
+    private boolean writeBatch(List<String> batch) {
+        try {
+            if (out == null) {
+                openCurrentFile();
+            }
+            LocalDate today = LocalDate.now(clock);
+            for (String line : batch) {
+                if (fileBytes >= rotateAtBytes || !today.equals(fileDay)) {
+                    rotate(today);
+                }
+                out.write(line);
+                // Records are ASCII apart from names and notes; close enough for rotation
+                fileBytes += line.length();
+            }
+            // One flush per batch: a crash loses at most the batch being written
+            out.flush();
+            written.addAndGet(batch.size());
+            return true;
+        } catch (IOException e) {
+            failure = e;
+            closeQuietly();
+            return false;
+        }
+    }
+
+    private void rotate(LocalDate today) throws IOException {
+        out.close();
+        out = null;
+        String stamp = LocalDateTime.now(clock).toString().replace(':', '-');
+        Path current = directory.resolve(CURRENT_FILE);
+        Path target = directory.resolve("audit-" + stamp + ".log");
+        for (int n = 1; Files.exists(target); n++) {
+            target = directory.resolve("audit-" + stamp + "-" + n + ".log");
+        }
+        try {
+            Files.move(current, target);
+        } catch (IOException e) {
+            // Keep appending to the current file and try again after another maxBytes or tomorrow
+            failure = e;
+            openCurrentFile();
+            fileDay = today;
+            rotateAtBytes = fileBytes + maxBytes;
+            return;
+        }
+        openCurrentFile();
+    }
+
+    private void closeQuietly() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            failure = e;
+        }
+        out = null;
+    }
+
+    private void openCurrentFile() throws IOException {
+        Path current = directory.resolve(CURRENT_FILE);
+        out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(current,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), 64 * 1024);
+        fileBytes = Files.size(current);
+        rotateAtBytes = maxBytes;
+        fileDay = fileBytes == 0 ? LocalDate.now(clock)
+            : LocalDate.ofInstant(Files.getLastModifiedTime(current).toInstant(), clock.getZone());
+    }
+
+    // Writes everything recorded so far, then stops the writer. Fails only if records were
+    // lost; write errors the writer recovered from are not repeated here.
+    @Override
+    public void close() throws IOException {
+        // No interrupt: it would close the file channel in the middle of a write
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (lost.get() > 0) {
+            throw new IOException(lost.get() + " audit record(s) were not written", failure);
+        }
+    }
+
+    public Path getFile() { return directory.resolve(CURRENT_FILE); }
+    public long getWrittenCount() { return written.get(); }
+    public int getPendingCount() { return pending.size(); }
+    public long getLostCount() { return lost.get(); }
+    // The most recent write or rotation error, even if a later retry succeeded
+    public IOException getFailure() { return failure; }
+}
@@ -0,0 +1,620 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+// Runs one command per line against the queue without menus or prompts, for intake
+// scripts and pipes. Every command answers with zero or more "patient ..." lines and
+// then exactly one "ok <command> ..." or "error <command> ..." line of key=value pairs.
+public class BatchRunner {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final String FIRST_DEPARTMENT = "MAIN";
+
+    // The department commands apply to; switched with dept name=<key>
+    private PatientManagement patientManagement;
+    private String department = FIRST_DEPARTMENT;
+    private final ShardedQueueManager departments;
+    private final PrintWriter out;
+    private final NoteIndex noteIndex;
+    private int lineNumber = 0;
+    private int errors = 0;
+
+    public BatchRunner(PatientManagement patientManagement, PrintWriter out) {
+        this(patientManagement, out, false);
+    }
+
+    // indexNotes: keep every note of the run searchable with the notes command. The index
+    // lives in memory and grows with the run, so long intake scripts leave it off.
+    public BatchRunner(PatientManagement patientManagement, PrintWriter out, boolean indexNotes) {
+        this.patientManagement = patientManagement;
+        this.out = out;
+        this.noteIndex = indexNotes ? new NoteIndex(patientManagement.getClock()) : null;
+        if (noteIndex != null) patientManagement.addQueueListener(noteIndex);
+        this.departments = new ShardedQueueManager(patientManagement.getClock(), ForkJoinPool.commonPool());
+        departments.addShard(FIRST_DEPARTMENT, patientManagement);
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--help")) {
+            System.out.println(usage());
+            return;
+        }
+
+        // Options come before the optional command file
+        long coarseMillis = 0;
+        boolean indexNotes = false;
+        int next = 0;
+        try {
+            for (; next < args.length && args[next].startsWith("--"); next++) {
+                if (args[next].equals("--coarse-clock") && next + 1 < args.length) {
+                    coarseMillis = Long.parseLong(args[++next]);
+                } else if (args[next].equals("--index-notes")) {
+                    indexNotes = true;
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[next]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            return;
+        }
+        String file = next < args.length ? args[next] : null;
+
+        // Scripted intake timestamps many patients per millisecond; a coarse clock makes
+        // each reading a single volatile load
+        CoarseClock coarseClock = coarseMillis > 0 ? new CoarseClock(coarseMillis) : null;
+        PatientManagement patientManagement = coarseClock != null
+            ? new PatientManagement(coarseClock) : new PatientManagement();
+        patientManagement.setVerbose(false);
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 64 * 1024));
+
+        try (Reader source = file != null ? new FileReader(file) : new InputStreamReader(System.in)) {
+            new BatchRunner(patientManagement, out, indexNotes).run(new BufferedReader(source, 64 * 1024));
+        } catch (IOException e) {
+            out.println("error batch message=" + quote(e.getMessage()));
+        }
+        out.flush();
+        if (coarseClock != null) {
+            coarseClock.close();
+        }
+    }
+
+    public static String usage() {
+        return String.join("\n",
+            "Usage: java Main --batch [--coarse-clock <ms>] [--index-notes] [command-file]    (reads stdin when no file is given)",
+            "  --coarse-clock <ms>   read the time from a clock refreshed every <ms> milliseconds",
+            "  --index-notes         keep this run's notes searchable with the notes command (held in memory)",
+            "",
+            "Commands, one per line (values with spaces go in double quotes; # starts a comment):",
+            "  add name=<name> age=<n> [birthday=yyyy-MM-dd] [emergency=y|n] [type=emergency|senior|regular] [notes=<text>]",
+            "      [duplicate=y]                   (add even if someone alike is waiting)",
+            "  call [types=emergency,senior,...]   peek",
+            "  remove name=<name>                  note name=<name> text=<text>",
+            "  position name=<name>                (place in line and estimated wait)",
+            "  type name=<name> to=<type>          search <text> [limit=<n>] [after=<token>]",
+            "  list [type=<type>] [limit=<n>] [after=<token>]   stats",
+            "  list order=service [type=<type>]    (in the order patients will be called)",
+            "      (with limit or after, results come in pages; pass next=<token> back as after=)",
+            "  notes <words or \"phrase\">          (every note this run, newest first; needs --index-notes)",
+            "  clear type=<type> | clear all       policy name=strict|aging[:minutes]",
+            "  admission name=reject|divert|waitlist[:emergency headroom]   (default divert)",
+            "  admission name=divert-to:<dept>     (full lanes send new arrivals to that department)",
+            "  dept name=<dept>                    (later commands apply to it; created on first use, first is MAIN)",
+            "  depts                               transfer name=<name> to=<dept>",
+            "  quit");
+    }
+
+    // Returns when the input ends or a quit command is read
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (!execute(line)) break;
+            // Answer interactive pipes promptly; batch files are flushed in large blocks
+            if (!in.ready()) out.flush();
+        }
+        out.flush();
+    }
+
+    // Executes one command line; false once the script asked to stop
+    public boolean execute(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) return true;
+
+        Command command;
+        try {
+            command = Command.parse(trimmed);
+        } catch (IllegalArgumentException e) {
+            error("parse", e.getMessage());
+            return true;
+        }
+
+        try {
+            switch (command.verb) {
+                case "add": add(command); break;
+                case "call": call(command); break;
+                case "peek": printResult("peek", patientManagement.peekNextPatient()); break;
+                case "remove": remove(command); break;
+                case "note": note(command); break;
+                case "type": changeType(command); break;
+                case "search": search(command); break;
+                case "position": position(command); break;
+                case "notes": notes(command); break;
+                case "list": list(command); break;
+                case "stats": stats(); break;
+                case "clear": clear(command); break;
+                case "policy": policy(command); break;
+                case "admission": admission(command); break;
+                case "dept": department(command); break;
+                case "depts": departments(); break;
+                case "transfer": transfer(command); break;
+                case "quit":
+                case "exit":
+                    out.println("ok " + command.verb);
+                    return false;
+                default:
+                    error(command.verb, "unknown command");
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            error(command.verb, e.getMessage());
+        }
+        return true;
+    }
+
+    public int getErrorCount() { return errors; }
+
+    // Same admission policy as Controller.addPatient
+    private void add(Command command) {
+        String name = command.require("name");
+        int age = parseAge(command.require("age"));
+        LocalDate birthday = command.has("birthday")
+            ? LocalDate.parse(command.get("birthday"))
+            : LocalDate.now(patientManagement.getClock()).minusYears(age);
+        if (!Patient.isValidBirthday(birthday, patientManagement.getClock())) {
+            throw new IllegalArgumentException("birthday must not be in the future or more than 150 years ago");
+        }
+
+        PatientType requested;
+        if (command.has("type")) {
+            requested = parseType(command.get("type"));
+        } else if (parseFlag(command.get("emergency"))) {
+            requested = PatientType.EMERGENCY;
+        } else {
+            requested = age >= 75 ? PatientType.SENIOR : PatientType.REGULAR;
+        }
+
+        Patient patient = new Patient(name, age, birthday, requested, command.get("notes"), patientManagement.getClock());
+        AdmissionDecision decision = patientManagement.admitPatient(patient, AdmissionController.Intent.ARRIVAL,
+            parseFlag(command.get("duplicate")));
+        if (decision.getOutcome() == AdmissionDecision.Outcome.DUPLICATE) {
+            Patient existing = decision.getDuplicates().get(0);
+            error("add", "possible duplicate of seq=" + existing.getSequence() + " name=" + existing.getName() +
+                  " (repeat with duplicate=y to add anyway)");
+            return;
+        }
+        if (decision.getOutcome() == AdmissionDecision.Outcome.REJECTED) {
+            error("add", decision.getReason());
+            return;
+        }
+
+        StringBuilder result = new StringBuilder("ok add");
+        appendPatient(result, patient);
+        if (decision.getOutcome() != AdmissionDecision.Outcome.ADMITTED) {
+            appendField(result, "admission", decision.getOutcome().name().toLowerCase());
+        }
+        if (decision.getLane() != requested) {
+            appendField(result, "diverted_from", requested.name());
+        }
+        out.println(result);
+    }
+
+    private void call(Command command) {
+        Set<PatientType> eligible = EnumSet.allOf(PatientType.class);
+        if (command.has("types")) {
+            eligible.clear();
+            for (String type : command.get("types").split(",")) {
+                eligible.add(parseType(type));
+            }
+        }
+        printResult("call", patientManagement.dequeuePatient(eligible));
+    }
+
+    private void remove(Command command) {
+        Patient patient = findPatient(command);
+        if (patient == null) return;
+        if (!patientManagement.removePatient(patient)) {
+            error("remove", "patient was called meanwhile");
+            return;
+        }
+        printResult("remove", patient);
+    }
+
+    // wait_min is absent until the call rate is known
+    private void position(Command command) {
+        Patient patient = findPatient(command);
+        if (patient == null) return;
+        QueuePosition position = patientManagement.getPositionInLine(patient);
+        if (position == null) {
+            error("position", "patient was called meanwhile");
+            return;
+        }
+        StringBuilder result = new StringBuilder("ok position");
+        appendPatient(result, patient);
+        appendField(result, "position", position.getPosition());
+        appendField(result, "ahead", position.getPatientsAhead());
+        if (!Double.isInfinite(position.getEstimatedWaitMinutes())) {
+            appendField(result, "wait_min", String.format(Locale.ROOT, "%.1f", position.getEstimatedWaitMinutes()));
+        }
+        out.println(result);
+    }
+
+    private void note(Command command) {
+        String text = command.require("text");
+        Patient patient = findPatient(command);
+        if (patient == null) return;
+        patientManagement.addNote(patient, text);
+        printResult("note", patient);
+    }
+
+    private void changeType(Command command) {
+        PatientType type = parseType(command.require("to"));
+        Patient patient = findPatient(command);
+        if (patient == null) return;
+        AdmissionDecision decision = patientManagement.admitTypeChange(patient, type);
+        if (!decision.isQueuedHere()) {
+            error("type", decision.getReason());
+            return;
+        }
+        printResult("type", patient);
+    }
+
+    private void search(Command command) {
+        String text = command.has("name") ? command.get("name") : command.text;
+        if (text.isEmpty()) throw new IllegalArgumentException("missing search text");
+        if (isPaged(command)) {
+            printPage("search", patientManagement.searchPatientsByName(text, command.get("after"), pageLimit(command)));
+            return;
+        }
+        List<Patient> found = patientManagement.searchPatientsByName(text);
+        for (Patient patient : found) {
+            printPatient(patient);
+        }
+        out.println("ok search count=" + found.size());
+    }
+
+    private void notes(Command command) {
+        if (noteIndex == null) throw new IllegalArgumentException("notes are not indexed; start with --index-notes");
+        if (command.text.isEmpty()) throw new IllegalArgumentException("missing search text");
+        List<NoteIndex.Hit> hits = noteIndex.search(command.text, Integer.MAX_VALUE);
+        for (NoteIndex.Hit hit : hits) {
+            StringBuilder line = new StringBuilder("note");
+            appendField(line, "seq", hit.getPatientSequence());
+            appendField(line, "name", hit.getPatientName());
+            appendField(line, "time", hit.getTime().withNano(0).toString());
+            appendField(line, "text", hit.getText());
+            out.println(line);
+        }
+        out.println("ok notes count=" + hits.size());
+    }
+
+    private void list(Command command) {
+        if (isPaged(command)) {
+            PatientType type = command.has("type") ? parseType(command.get("type")) : null;
+            printPage("list", patientManagement.findPatients(p -> type == null || p.getType() == type,
+                command.get("after"), pageLimit(command)));
+            return;
+        }
+        List<Patient> patients = new ArrayList<>();
+        if ("service".equalsIgnoreCase(command.get("order"))) {
+            PatientType type = command.has("type") ? parseType(command.get("type")) : null;
+            for (Patient patient : patientManagement.patientsInServiceOrder()) {
+                if (type == null || patient.getType() == type) patients.add(patient);
+            }
+        } else if (command.has("type")) {
+            PatientType type = parseType(command.get("type"));
+            patientManagement.allPatients().filter(p -> p.getType() == type).forEach(patients::add);
+        } else {
+            patientManagement.allPatients().forEach(patients::add);
+        }
+        for (Patient patient : patients) {
+            printPatient(patient);
+        }
+        out.println("ok list count=" + patients.size());
+    }
+
+    private static boolean isPaged(Command command) {
+        return command.has("limit") || command.has("after");
+    }
+
+    private static int pageLimit(Command command) {
+        return command.has("limit") ? parseLimit(command.get("limit")) : DEFAULT_PAGE_SIZE;
+    }
+
+    // next= is the token for after= on the following page, absent on the last page
+    private void printPage(String verb, PatientPage page) {
+        for (Patient patient : page.getPatients()) {
+            printPatient(patient);
+        }
+        StringBuilder result = new StringBuilder("ok " + verb);
+        appendField(result, "count", page.getPatients().size());
+        if (page.hasMore()) appendField(result, "next", page.getNextToken());
+        out.println(result);
+    }
+
+    private void stats() {
+        StringBuilder result = new StringBuilder("ok stats");
+        appendField(result, "waiting", patientManagement.getTotalPatientCount());
+        for (PatientType type : PatientType.values()) {
+            appendField(result, type.name().toLowerCase(), patientManagement.getCountByType(type));
+        }
+        appendField(result, "arrivals_today", patientManagement.getTotalPatientsToday());
+        appendField(result, "emergencies_today", patientManagement.getTotalEmergenciesToday());
+        appendField(result, "calls_today", patientManagement.getTotalCallsToday());
+        out.println(result);
+    }
+
+    private void clear(Command command) {
+        int removed;
+        if (command.text.equals("all")) {
+            removed = patientManagement.clearAllQueues().size();
+        } else {
+            removed = patientManagement.clearQueueByType(parseType(command.require("type"))).size();
+        }
+        out.println("ok clear removed=" + removed);
+    }
+
+    private void policy(Command command) {
+        SchedulingPolicy policy = SimulationConfig.parsePolicy(command.require("name"));
+        patientManagement.setSchedulingPolicy(policy);
+        out.println("ok policy name=" + quote(policy.getName()));
+    }
+
+    private void admission(Command command) {
+        String name = command.require("name");
+        AdmissionPolicy policy = name.toLowerCase().startsWith("divert-to:")
+            ? new DivertToShardPolicy(departments, name.substring("divert-to:".length()))
+            : AdmissionController.parsePolicy(name);
+        patientManagement.getAdmissionController().setPolicy(policy);
+        out.println("ok admission name=" + quote(policy.getName()));
+    }
+
+    // Later commands apply to this department; it is created empty on first use
+    private void department(Command command) {
+        String key = command.require("name");
+        if (key.trim().isEmpty()) throw new IllegalArgumentException("department name must not be empty");
+        boolean created = departments.getShard(key) == null;
+        patientManagement = departments.getOrCreateShard(key);
+        department = key.trim().toUpperCase();
+        if (created && noteIndex != null) patientManagement.addQueueListener(noteIndex);
+        StringBuilder result = new StringBuilder("ok dept");
+        appendField(result, "name", department);
+        appendField(result, "waiting", patientManagement.getTotalPatientCount());
+        out.println(result);
+    }
+
+    private void departments() {
+        ShardStatistics stats = departments.aggregateStatistics();
+        for (Map.Entry<String, Integer> entry : stats.getWaitingByShard().entrySet()) {
+            StringBuilder line = new StringBuilder("dept");
+            appendField(line, "name", entry.getKey());
+            appendField(line, "waiting", entry.getValue());
+            out.println(line);
+        }
+        StringBuilder result = new StringBuilder("ok depts");
+        appendField(result, "count", departments.getShardCount());
+        appendField(result, "waiting", stats.getTotalWaiting());
+        appendField(result, "arrivals_today", stats.getArrivalsToday());
+        appendField(result, "calls_today", stats.getCallsToday());
+        out.println(result);
+    }
+
+    // Moves a patient of the current department to another one, keeping their arrival time
+    private void transfer(Command command) {
+        String to = command.require("to");
+        Patient patient = findPatient(command);
+        if (patient == null) return;
+        if (departments.getShard(to) == null) {
+            error("transfer", "unknown department: " + to);
+            return;
+        }
+        if (!departments.transferPatient(department, to, patient.getName())) {
+            error("transfer", "target lane is full or the patient was called meanwhile");
+            return;
+        }
+        printResult("transfer", patient);
+    }
+
+    private Patient findPatient(Command command) {
+        Patient patient = patientManagement.findPatientByExactName(command.require("name"));
+        if (patient == null) {
+            error(command.verb, "patient not found");
+        }
+        return patient;
+    }
+
+    private void printResult(String verb, Patient patient) {
+        StringBuilder result = new StringBuilder("ok ").append(verb);
+        if (patient == null) {
+            appendField(result, "found", "false");
+        } else {
+            appendPatient(result, patient);
+        }
+        out.println(result);
+    }
+
+    private void printPatient(Patient patient) {
+        StringBuilder line = new StringBuilder("patient");
+        appendPatient(line, patient);
+        out.println(line);
+    }
+
+    private void appendPatient(StringBuilder line, Patient patient) {
+        appendField(line, "seq", patient.getSequence());
+        appendField(line, "name", patient.getName());
+        appendField(line, "type", patient.getType().name().toLowerCase());
+        appendField(line, "age", patient.getAge());
+        appendField(line, "birthday", patient.getBirthday().toString());
+        appendField(line, "arrival", patient.getArrivalTime().withNano(0).toString());
+        long waited = Duration.between(patient.getArrivalTime(), LocalDateTime.now(patientManagement.getClock())).getSeconds();
+        appendField(line, "waited_s", Math.max(0, waited));
+    }
+
+    private void error(String verb, String message) {
+        errors++;
+        out.println("error " + verb + " line=" + lineNumber + " message=" + quote(message));
+    }
+
+    private static void appendField(StringBuilder line, String key, Object value) {
+        line.append(' ').append(key).append('=').append(quote(String.valueOf(value)));
+    }
+
+    // Plain values pass through; anything with spaces, quotes or '=' is double-quoted
+    static String quote(String value) {
+        if (value == null) return "\"\"";
+        boolean plain = !value.isEmpty();
+        for (int i = 0; i < value.length() && plain; i++) {
+            char c = value.charAt(i);
+            plain = c > ' ' && c != '"' && c != '=' && c != '\\';
+        }
+        if (plain) return value;
+
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') quoted.append('\\');
+            if (c == '\n') {
+                quoted.append("\\n");
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static int parseAge(String value) {
+        int age;
+        try {
+            age = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("age must be a number");
+        }
+        if (age < 0 || age > 150) throw new IllegalArgumentException("age must be between 0 and 150");
+        return age;
+    }
+
+    private static int parseLimit(String value) {
+        int limit;
+        try {
+            limit = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        return limit;
+    }
+
+    private static PatientType parseType(String value) {
+        try {
+            return PatientType.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown patient type: " + value);
+        }
+    }
+
+    private static boolean parseFlag(String value) {
+        if (value == null) return false;
+        String flag = value.toLowerCase();
+        return flag.equals("y") || flag.equals("yes") || flag.equals("true") || flag.equals("1");
+    }
+
+    // "verb key=value key="quoted value" free text"
+    static final class Command {
+        final String verb;
+        final Map<String, String> args = new LinkedHashMap<>();
+        final String text;
+
+        private Command(String verb, String text) {
+            this.verb = verb;
+            this.text = text;
+        }
+
+        static Command parse(String line) {
+            int space = line.indexOf(' ');
+            String verb = (space < 0 ? line : line.substring(0, space)).toLowerCase();
+            String rest = space < 0 ? "" : line.substring(space + 1);
+
+            Map<String, String> args = new LinkedHashMap<>();
+            StringBuilder text = new StringBuilder();
+            int i = 0;
+            while (i < rest.length()) {
+                while (i < rest.length() && rest.charAt(i) == ' ') i++;
+                if (i >= rest.length()) break;
+
+                int start = i;
+                while (i < rest.length() && rest.charAt(i) != ' ' && rest.charAt(i) != '=') i++;
+                if (i < rest.length() && rest.charAt(i) == '=') {
+                    String key = rest.substring(start, i).toLowerCase();
+                    StringBuilder value = new StringBuilder();
+                    i = readValue(rest, i + 1, value);
+                    args.put(key, value.toString());
+                } else {
+                    if (text.length() > 0) text.append(' ');
+                    text.append(rest, start, i);
+                }
+            }
+
+            Command command = new Command(verb, text.toString());
+            command.args.putAll(args);
+            return command;
+        }
+
+        private static int readValue(String rest, int i, StringBuilder value) {
+            if (i >= rest.length() || rest.charAt(i) != '"') {
+                while (i < rest.length() && rest.charAt(i) != ' ') {
+                    value.append(rest.charAt(i++));
+                }
+                return i;
+            }
+            for (i++; i < rest.length(); i++) {
+                char c = rest.charAt(i);
+                if (c == '"') return i + 1;
+                if (c == '\\' && i + 1 < rest.length()) {
+                    char escaped = rest.charAt(++i);
+                    value.append(escaped == 'n' ? '\n' : escaped);
+                } else {
+                    value.append(c);
+                }
+            }
+            throw new IllegalArgumentException("unterminated quote");
+        }
+
+        boolean has(String key) { return args.containsKey(key); }
+        String get(String key) { return args.get(key); }
+
+        String require(String key) {
+            String value = args.get(key);
+            if (value == null || value.trim().isEmpty()) {
+                throw new IllegalArgumentException("missing " + key + "=");
+            }
+            return value;
+        }
+    }
+}
@@ -1,15 +1,21 @@
 import java.util.List;
 import java.util.Scanner;
-import java.util.stream.Collectors;
 
 public class BulkOperations {
+    private static final int PREVIEW_SIZE = 20;
+
     private PatientManagement patientManagement;
     private Scanner scanner;
+    private AuditLog auditLog;
     
     public BulkOperations(PatientManagement patientManagement, Scanner scanner) {
         this.patientManagement = patientManagement;
         this.scanner = scanner;
     }
+
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
     
     public void showBulkOperationsMenu() {
         System.out.println("\n" + Colors.CYAN + Colors.BOLD + "=== BULK OPERATIONS ===" + Colors.RESET);
@@ -75,13 +81,11 @@ public class BulkOperations {
                           type.name().toLowerCase() + " patient(s)." + Colors.RESET);
         
         if (confirmAction("clear " + type.name().toLowerCase() + " queue")) {
-            List<String> removedPatients = patientManagement.clearQueueByType(type);
+            List<Patient> removedPatients = patientManagement.clearQueueByType(type);
+            audit("bulk.clear_type", "type=" + type.name() + " removed=" + removedPatients.size());
             System.out.println(Colors.GREEN + "Cleared " + removedPatients.size() + 
                               " patients from " + type.name().toLowerCase() + " queue:" + Colors.RESET);
-            
-            for (String patientName : removedPatients) {
-                System.out.println(Colors.WHITE + "  - " + patientName + Colors.RESET);
-            }
+            printPatients(removedPatients, removedPatients.size());
         } else {
             System.out.println(Colors.YELLOW + "Operation cancelled." + Colors.RESET);
         }
@@ -98,13 +102,11 @@ public class BulkOperations {
                           totalCount + " patients from ALL queues!" + Colors.RESET);
         
         if (confirmAction("clear ALL queues")) {
-            List<String> removedPatients = patientManagement.clearAllQueues();
+            List<Patient> removedPatients = patientManagement.clearAllQueues();
+            audit("bulk.clear_all", "removed=" + removedPatients.size());
             System.out.println(Colors.GREEN + "Cleared all queues. Removed " + 
                               removedPatients.size() + " patients:" + Colors.RESET);
-            
-            for (String patientName : removedPatients) {
-                System.out.println(Colors.WHITE + "  - " + patientName + Colors.RESET);
-            }
+            printPatients(removedPatients, removedPatients.size());
         } else {
             System.out.println(Colors.YELLOW + "Operation cancelled." + Colors.RESET);
         }
@@ -121,23 +123,24 @@ public class BulkOperations {
             return;
         }
         
-        List<String> affectedPatients = patientManagement.getPatientsInAgeRange(minAge, maxAge);
-        
-        if (affectedPatients.isEmpty()) {
+        // Only the first page is fetched for the preview; the total is counted without copying
+        PatientPage preview = patientManagement.getPatientsInAgeRange(minAge, maxAge, null, PREVIEW_SIZE);
+        if (preview.isEmpty()) {
             System.out.println(Colors.YELLOW + "No patients found in age range " + 
                               minAge + "-" + maxAge + "." + Colors.RESET);
             return;
         }
+        int affected = preview.hasMore()
+            ? patientManagement.countPatients(p -> p.getAge() >= minAge && p.getAge() <= maxAge)
+            : preview.getPatients().size();
         
-        System.out.println(Colors.YELLOW + "This will remove " + affectedPatients.size() + 
+        System.out.println(Colors.YELLOW + "This will remove " + affected + 
                           " patient(s) aged " + minAge + "-" + maxAge + ":" + Colors.RESET);
-        
-        for (String patientInfo : affectedPatients) {
-            System.out.println(Colors.WHITE + "  - " + patientInfo + Colors.RESET);
-        }
+        printPatients(preview.getPatients(), affected);
         
         if (confirmAction("clear patients in age range " + minAge + "-" + maxAge)) {
-            List<String> removedPatients = patientManagement.clearByAgeRange(minAge, maxAge);
+            List<Patient> removedPatients = patientManagement.clearByAgeRange(minAge, maxAge);
+            audit("bulk.clear_age_range", "ages=" + minAge + "-" + maxAge + " removed=" + removedPatients.size());
             System.out.println(Colors.GREEN + "Removed " + removedPatients.size() + 
                               " patients in age range " + minAge + "-" + maxAge + "." + Colors.RESET);
         } else {
@@ -145,6 +148,26 @@ public class BulkOperations {
         }
     }
     
+    // At most PREVIEW_SIZE lines, then how many more there are
+    private void printPatients(List<Patient> patients, int total) {
+        int shown = Math.min(patients.size(), PREVIEW_SIZE);
+        for (int i = 0; i < shown; i++) {
+            Patient patient = patients.get(i);
+            System.out.println(Colors.WHITE + "  - " + patient.getName() + " (Age: " + patient.getAge() + 
+                              ", Type: " + patient.getType().name() + ")" + Colors.RESET);
+        }
+        if (total > shown) {
+            System.out.println(Colors.WHITE + "  ... and " + (total - shown) + " more" + Colors.RESET);
+        }
+    }
+    
+    // Each removed patient is also audited individually as a queue event
+    private void audit(String action, String detail) {
+        if (auditLog != null) {
+            auditLog.record(action, detail);
+        }
+    }
+    
     private boolean confirmAction(String action) {
         while (true) {
             System.out.print(Colors.RED + Colors.BOLD + "Are you sure you want to " + 
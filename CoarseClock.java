@@ -0,0 +1,87 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+// A clock that returns a cached time refreshed by a background thread every few
+// milliseconds. Reading it is a single volatile load, which helps scripted intake that
+// timestamps many patients per millisecond; arrivals within one tick are ordered by
+// their sequence number instead.
+public class CoarseClock extends Clock implements AutoCloseable {
+    private final Ticker ticker;
+    private final ZoneId zone;
+
+    // Shared between a clock and its withZone() copies so they all read one time
+    private static final class Ticker implements Runnable {
+        private final Clock source;
+        private final long resolutionMillis;
+        private final Thread thread;
+        private volatile long currentMillis;
+        private volatile boolean running = true;
+
+        Ticker(Clock source, long resolutionMillis) {
+            this.source = source;
+            this.resolutionMillis = resolutionMillis;
+            this.currentMillis = source.millis();
+            this.thread = new Thread(this, "coarse-clock");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    Thread.sleep(resolutionMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Never step backwards, even if the source clock is adjusted
+                currentMillis = Math.max(currentMillis, source.millis());
+            }
+        }
+
+        void stop() {
+            running = false;
+            thread.interrupt();
+        }
+    }
+
+    public CoarseClock(long resolutionMillis) {
+        this(Clock.systemDefaultZone(), resolutionMillis);
+    }
+
+    public CoarseClock(Clock source, long resolutionMillis) {
+        if (resolutionMillis < 1) {
+            throw new IllegalArgumentException("Resolution must be at least 1 ms");
+        }
+        this.ticker = new Ticker(source, resolutionMillis);
+        this.zone = source.getZone();
+    }
+
+    private CoarseClock(Ticker ticker, ZoneId zone) {
+        this.ticker = ticker;
+        this.zone = zone;
+    }
+
+    public long getResolutionMillis() { return ticker.resolutionMillis; }
+
+    @Override
+    public long millis() { return ticker.currentMillis; }
+
+    @Override
+    public Instant instant() { return Instant.ofEpochMilli(ticker.currentMillis); }
+
+    @Override
+    public ZoneId getZone() { return zone; }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new CoarseClock(ticker, zone);
+    }
+
+    // Stops the refresh thread for this clock and every withZone() copy
+    @Override
+    public void close() {
+        ticker.stop();
+    }
+}
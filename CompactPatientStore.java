@@ -0,0 +1,280 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// Packs patients into parallel primitive arrays instead of one object graph per patient,
+// for registries that hold hundreds of thousands of records. Patient objects are only
+// materialized when a caller asks for one. A library piece: the live queue keeps Patient
+// objects; StoreFootprint (java Main --footprint) measures both layouts side by side.
+//
+// Records are addressed by handles that carry the slot and its generation. A slot is
+// reused after remove(), but the generation changes, so an old handle reads as gone
+// instead of quietly returning whoever took the slot.
+public class CompactPatientStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long FREE = 0; // patient sequences start at 1
+    private static final long NO_TIMESTAMP = Patient.NO_TIMESTAMP;
+    private static final int COMPACT_MIN = 4096;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int GENERATION_MASK = 0x7FFFFFFF; // keeps handles non-negative
+
+    private final Clock clock;
+    private final ZoneId zone;
+    private long[] sequences;
+    private long[] arrivalNanos; // epoch nanoseconds, exact until the year 2262
+    private int[] birthdayDays;
+    private int[] nameIds;
+    private int[] notesStart;
+    private int[] notesCount;
+    private byte[] types;
+    private byte[] ages;
+
+    // Released slots are chained through nextFree and reused before growing
+    private int[] nextFree;
+    private int[] generations;
+    private int freeHead = -1;
+    private int highWater = 0;
+    private int size = 0;
+
+    // Note histories are split into entries so boilerplate bodies are stored once
+    private long[] noteSeconds = new long[INITIAL_CAPACITY];
+    private int[] noteBodies = new int[INITIAL_CAPACITY];
+    private int noteEntries = 0;
+    private int liveNoteEntries = 0;
+
+    // Arenas are append-only; reference counts tell compact() which ids are still used
+    private StringArena names = new StringArena();
+    private StringArena bodies = new StringArena();
+    private int[] nameRefs = new int[INITIAL_CAPACITY];
+    private int[] bodyRefs = new int[INITIAL_CAPACITY];
+    private int liveNames = 0;
+    private int liveBodies = 0;
+
+    public CompactPatientStore() {
+        this(Clock.systemDefaultZone());
+    }
+
+    // Patients read back from the store stamp their notes with this clock
+    public CompactPatientStore(Clock clock) {
+        this.clock = clock;
+        this.zone = clock.getZone();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    // Copies the patient in; returns the handle that identifies it in this store
+    public synchronized long add(Patient patient) {
+        int slot = claimSlot();
+        sequences[slot] = patient.getSequence();
+        Instant arrival = patient.getArrivalTime().atZone(zone).toInstant();
+        arrivalNanos[slot] = arrival.getEpochSecond() * NANOS_PER_SECOND + arrival.getNano();
+        birthdayDays[slot] = (int) patient.getBirthday().toEpochDay();
+        nameIds[slot] = internName(patient.getName());
+        appendNotes(slot, patient.getNotes());
+        types[slot] = (byte) patient.getType().ordinal();
+        ages[slot] = (byte) patient.getAge();
+        size++;
+        return handle(slot);
+    }
+
+    public synchronized boolean remove(long handle) {
+        if (!isLive(handle)) return false;
+        int slot = (int) handle;
+        sequences[slot] = FREE;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        if (--nameRefs[nameIds[slot]] == 0) liveNames--;
+        for (int i = notesStart[slot]; i < notesStart[slot] + notesCount[slot]; i++) {
+            if (--bodyRefs[noteBodies[i]] == 0) liveBodies--;
+        }
+        liveNoteEntries -= notesCount[slot];
+        nextFree[slot] = freeHead;
+        freeHead = slot;
+        size--;
+        compactIfWasteful();
+        return true;
+    }
+
+    // Builds a Patient view of the record, or null if it was removed; changes to the view
+    // are not written back
+    public synchronized Patient get(long handle) {
+        if (!isLive(handle)) return null;
+        int slot = (int) handle;
+        return Patient.restore(sequences[slot], names.get(nameIds[slot]), ages[slot] & 0xFF,
+            LocalDate.ofEpochDay(birthdayDays[slot]), PatientType.values()[types[slot]], arrivalTime(slot), notes(slot), clock);
+    }
+
+    // Exact-name lookup compares arena ids instead of strings; -1 if nobody has the name
+    public synchronized long findByName(String name) {
+        int nameId = names.find(name);
+        if (nameId < 0 || nameRefs[nameId] == 0) return -1;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (sequences[slot] != FREE && nameIds[slot] == nameId) return handle(slot);
+        }
+        return -1;
+    }
+
+    // Field accessors read the arrays directly so scans need not create Patient objects.
+    // A handle whose record was removed throws instead of reading the slot's new owner.
+    public synchronized long getSequence(long handle) { return sequences[slotOf(handle)]; }
+    public synchronized String getName(long handle) { return names.get(nameIds[slotOf(handle)]); }
+    public synchronized int getAge(long handle) { return ages[slotOf(handle)] & 0xFF; }
+    public synchronized PatientType getType(long handle) { return PatientType.values()[types[slotOf(handle)]]; }
+    public synchronized long getArrivalMillis(long handle) { return Math.floorDiv(arrivalNanos[slotOf(handle)], 1_000_000L); }
+    public synchronized LocalDateTime getArrivalTime(long handle) { return arrivalTime(slotOf(handle)); }
+    public synchronized String getNotes(long handle) { return notes(slotOf(handle)); }
+
+    public synchronized boolean isLive(long handle) {
+        if (handle < 0) return false;
+        int slot = (int) handle;
+        return slot < highWater && sequences[slot] != FREE && generations[slot] == (int) (handle >>> 32);
+    }
+
+    // Visits the handles of live records in slot order
+    public synchronized void forEach(LongConsumer action) {
+        for (int slot = 0; slot < highWater; slot++) {
+            if (sequences[slot] != FREE) action.accept(handle(slot));
+        }
+    }
+
+    private long handle(int slot) {
+        return ((long) generations[slot] << 32) | slot;
+    }
+
+    private int slotOf(long handle) {
+        if (!isLive(handle)) throw new IllegalArgumentException("No live patient with handle " + handle);
+        return (int) handle;
+    }
+
+    private LocalDateTime arrivalTime(int slot) {
+        long nanos = arrivalNanos[slot];
+        Instant arrival = Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+        return LocalDateTime.ofInstant(arrival, zone);
+    }
+
+    // Rebuilds the note history in the same "[timestamp]: note" form Patient keeps
+    private String notes(int slot) {
+        StringBuilder history = new StringBuilder();
+        for (int i = notesStart[slot]; i < notesStart[slot] + notesCount[slot]; i++) {
+            if (history.length() > 0) history.append("\n");
+            if (noteSeconds[i] != NO_TIMESTAMP) {
+                history.append("[");
+                TimestampFormatter.appendTo(history, LocalDateTime.ofEpochSecond(noteSeconds[i], 0, ZoneOffset.UTC));
+                history.append("]: ");
+            }
+            history.append(bodies.get(noteBodies[i]));
+        }
+        return history.toString();
+    }
+
+    public synchronized int size() { return size; }
+
+    // Estimate from the array and arena capacities, divided over the live records; it leaves
+    // out object headers, so StoreFootprint measures the real heap
+    public synchronized long getBytesPerPatient() {
+        if (size == 0) return 0;
+        long perSlot = 8 + 8 + 4 + 4 + 4 + 4 + 1 + 1 + 4 + 4;
+        long bytes = perSlot * sequences.length
+            + 12L * noteSeconds.length
+            + 4L * (nameRefs.length + bodyRefs.length)
+            + names.getByteSize() + bodies.getByteSize();
+        return bytes / size;
+    }
+
+    private int claimSlot() {
+        if (freeHead >= 0) {
+            int slot = freeHead;
+            freeHead = nextFree[slot];
+            return slot;
+        }
+        if (highWater == sequences.length) {
+            allocate(sequences.length * 2);
+        }
+        return highWater++;
+    }
+
+    private void allocate(int capacity) {
+        sequences = sequences == null ? new long[capacity] : Arrays.copyOf(sequences, capacity);
+        arrivalNanos = arrivalNanos == null ? new long[capacity] : Arrays.copyOf(arrivalNanos, capacity);
+        birthdayDays = birthdayDays == null ? new int[capacity] : Arrays.copyOf(birthdayDays, capacity);
+        nameIds = nameIds == null ? new int[capacity] : Arrays.copyOf(nameIds, capacity);
+        notesStart = notesStart == null ? new int[capacity] : Arrays.copyOf(notesStart, capacity);
+        notesCount = notesCount == null ? new int[capacity] : Arrays.copyOf(notesCount, capacity);
+        types = types == null ? new byte[capacity] : Arrays.copyOf(types, capacity);
+        ages = ages == null ? new byte[capacity] : Arrays.copyOf(ages, capacity);
+        nextFree = nextFree == null ? new int[capacity] : Arrays.copyOf(nextFree, capacity);
+        generations = generations == null ? new int[capacity] : Arrays.copyOf(generations, capacity);
+    }
+
+    private int internName(String name) {
+        int id = names.intern(name);
+        if (id == nameRefs.length) nameRefs = Arrays.copyOf(nameRefs, id * 2);
+        if (nameRefs[id]++ == 0) liveNames++;
+        return id;
+    }
+
+    private int internBody(String body) {
+        int id = bodies.intern(body);
+        if (id == bodyRefs.length) bodyRefs = Arrays.copyOf(bodyRefs, id * 2);
+        if (bodyRefs[id]++ == 0) liveBodies++;
+        return id;
+    }
+
+    private void appendNotes(int slot, String history) {
+        notesStart[slot] = noteEntries;
+        notesCount[slot] = 0;
+        Patient.forEachNote(history, (seconds, body) -> addNoteEntry(slot, seconds, body));
+    }
+
+    private void addNoteEntry(int slot, long seconds, String body) {
+        if (noteEntries == noteSeconds.length) {
+            noteSeconds = Arrays.copyOf(noteSeconds, noteEntries * 2);
+            noteBodies = Arrays.copyOf(noteBodies, noteEntries * 2);
+        }
+        noteSeconds[noteEntries] = seconds;
+        noteBodies[noteEntries] = internBody(body);
+        noteEntries++;
+        liveNoteEntries++;
+        notesCount[slot]++;
+    }
+
+    // Once most arena entries or note entries belong to removed patients, copy the live
+    // ones into fresh storage and renumber
+    private void compactIfWasteful() {
+        boolean namesWasteful = names.size() > COMPACT_MIN && names.size() > 2 * liveNames;
+        boolean bodiesWasteful = bodies.size() > COMPACT_MIN && bodies.size() > 2 * liveBodies;
+        boolean notesWasteful = noteEntries > COMPACT_MIN && noteEntries > 2 * liveNoteEntries;
+        if (!namesWasteful && !bodiesWasteful && !notesWasteful) return;
+
+        StringArena oldNames = names;
+        StringArena oldBodies = bodies;
+        long[] oldSeconds = noteSeconds;
+        int[] oldBodyIds = noteBodies;
+
+        names = new StringArena();
+        bodies = new StringArena();
+        nameRefs = new int[Math.max(INITIAL_CAPACITY, liveNames * 2)];
+        bodyRefs = new int[Math.max(INITIAL_CAPACITY, liveBodies * 2)];
+        noteSeconds = new long[Math.max(INITIAL_CAPACITY, liveNoteEntries * 2)];
+        noteBodies = new int[noteSeconds.length];
+        liveNames = 0;
+        liveBodies = 0;
+        noteEntries = 0;
+        liveNoteEntries = 0;
+
+        for (int slot = 0; slot < highWater; slot++) {
+            if (sequences[slot] == FREE) continue;
+            nameIds[slot] = internName(oldNames.get(nameIds[slot]));
+            int from = notesStart[slot];
+            int entries = notesCount[slot];
+            notesStart[slot] = noteEntries;
+            notesCount[slot] = 0;
+            for (int i = from; i < from + entries; i++) {
+                addNoteEntry(slot, oldSeconds[i], oldBodies.get(oldBodyIds[i]));
+            }
+        }
+    }
+}
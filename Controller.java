@@ -1,21 +1,43 @@
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public class Controller {
     private PatientManagement patientManagement;
     private Scanner scanner;
     private BulkOperations bulkOperations;
     private PatientEditor patientEditor;
+    private StationDispatcher stationDispatcher;
+    private ReplicationPrimary replicationPrimary;
+    private WaitingRoomFeed waitingRoomFeed;
+    private NoteIndex noteIndex;
+    private MetricsEndpoint metricsEndpoint;
+    private AuditLog auditLog;
+    private PatientArchive patientArchive;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private static final int SEARCH_PAGE_SIZE = 10;
 
     public Controller() {
-        patientManagement = new PatientManagement();
+        this(new PatientManagement());
+    }
+
+    public Controller(PatientManagement patientManagement) {
+        this.patientManagement = patientManagement;
         scanner = new Scanner(System.in);
         bulkOperations = new BulkOperations(patientManagement, scanner);
         patientEditor = new PatientEditor(patientManagement, scanner);
+        stationDispatcher = new StationDispatcher(patientManagement);
+        for (int i = 1; i <= QueueConfig.DEFAULT_TREATMENT_ROOMS; i++) {
+            stationDispatcher.addStation(TreatmentStation.general("Room " + i));
+        }
     }
 
     public void run() {
@@ -33,6 +55,32 @@ public class Controller {
         System.out.println(Colors.GREEN + "Thank you for using the Patient Management System. Goodbye!" + Colors.RESET);
     }
 
+    public void setReplicationPrimary(ReplicationPrimary replicationPrimary) {
+        this.replicationPrimary = replicationPrimary;
+    }
+
+    public void setWaitingRoomFeed(WaitingRoomFeed waitingRoomFeed) {
+        this.waitingRoomFeed = waitingRoomFeed;
+    }
+
+    public void setNoteIndex(NoteIndex noteIndex) {
+        this.noteIndex = noteIndex;
+    }
+
+    public void setMetricsEndpoint(MetricsEndpoint metricsEndpoint) {
+        this.metricsEndpoint = metricsEndpoint;
+    }
+
+    public void setPatientArchive(PatientArchive patientArchive) {
+        this.patientArchive = patientArchive;
+    }
+
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
+        bulkOperations.setAuditLog(auditLog);
+        patientEditor.setAuditLog(auditLog);
+    }
+
     private void displaySystemInfo() {
         System.out.println(Colors.WHITE + "System Capacity Limits:" + Colors.RESET);
         System.out.println(Colors.RED + "  Emergency: " + QueueConfig.MAX_EMERGENCY_CAPACITY + Colors.RESET);
@@ -107,6 +155,18 @@ public class Controller {
             hasWarnings = true;
         }
         
+        // Lanes that are not full yet but are filling faster than they are called
+        ArrivalForecaster forecaster = patientManagement.getForecaster();
+        for (PatientType type : PatientType.values()) {
+            int count = patientManagement.getCountByType(type);
+            int max = QueueConfig.getMaxCapacityForType(type);
+            if (!QueueConfig.isNearCapacity(count, max) && forecaster.isForecastToFill(type, count, max)) {
+                System.out.println(type.getColor() + "⚠ " + type.getQueueName() + " forecast to fill in " + 
+                                  ArrivalForecaster.formatMinutes(forecaster.getMinutesToCapacity(type, count, max)) + Colors.RESET);
+                hasWarnings = true;
+            }
+        }
+        
         if (hasWarnings) {
             System.out.println();
         }
@@ -145,12 +205,11 @@ public class Controller {
         try {
             System.out.println("\n" + Colors.GREEN + "=== ADD NEW PATIENT ===" + Colors.RESET);
 
-            // Check total capacity first
-            if (QueueConfig.isAtCapacity(patientManagement.getTotalPatientCount(), QueueConfig.MAX_TOTAL_CAPACITY)) {
+            AdmissionController admission = patientManagement.getAdmissionController();
+            if (admission.isTotalFull()) {
                 System.out.println(Colors.RED + Colors.BOLD + "SYSTEM AT MAXIMUM CAPACITY!" + Colors.RESET);
-                System.out.println(Colors.RED + "Cannot add more patients. Current: " + 
-                                  patientManagement.getTotalPatientCount() + "/" + QueueConfig.MAX_TOTAL_CAPACITY + Colors.RESET);
-                return;
+                System.out.println(Colors.RED + "Current: " + patientManagement.getTotalPatientCount() + "/" + 
+                                  QueueConfig.MAX_TOTAL_CAPACITY + " - admission policy: " + admission.getPolicy().getName() + Colors.RESET);
             }
 
             String name = getInput("Enter patient name: ");
@@ -160,43 +219,18 @@ public class Controller {
             boolean isEmergency = getBooleanInput("Is this an emergency patient? (y/n): ");
             String notes = getInput("Enter optional notes (press Enter to skip): ");
 
-            // Determine patient type and check capacity
-            PatientType targetType;
-            if (isEmergency) {
-                targetType = PatientType.EMERGENCY;
-                if (QueueConfig.isAtCapacity(patientManagement.getEmergencyCount(), QueueConfig.MAX_EMERGENCY_CAPACITY)) {
-                    System.out.println(Colors.RED + "Emergency queue is at capacity!" + Colors.RESET);
-                    if (!getBooleanInput("Add as Senior/Regular instead? (y/n): ")) {
-                        return;
-                    }
-                    isEmergency = false;
-                    targetType = age >= 75 ? PatientType.SENIOR : PatientType.REGULAR;
-                }
-            } else {
-                targetType = age >= 75 ? PatientType.SENIOR : PatientType.REGULAR;
-            }
-
-            // Check capacity for determined type
-            if (targetType == PatientType.SENIOR && 
-                QueueConfig.isAtCapacity(patientManagement.getSeniorCount(), QueueConfig.MAX_SENIOR_CAPACITY)) {
-                System.out.println(Colors.ORANGE + "Senior queue is at capacity!" + Colors.RESET);
-                if (getBooleanInput("Add as Regular instead? (y/n): ")) {
-                    targetType = PatientType.REGULAR;
-                } else {
-                    return;
-                }
+            // Capacity, diversion and the waitlist are decided by the admission policy
+            Patient patient = Patient.createByType(name, age, birthday, notes, isEmergency, patientManagement.getClock());
+            AdmissionDecision decision = patientManagement.admitPatient(patient);
+            if (decision.getOutcome() == AdmissionDecision.Outcome.DUPLICATE && confirmNotDuplicate(decision)) {
+                decision = patientManagement.admitPatient(patient, AdmissionController.Intent.ARRIVAL, true);
             }
-
-            if (targetType == PatientType.REGULAR && 
-                QueueConfig.isAtCapacity(patientManagement.getRegularCount(), QueueConfig.MAX_REGULAR_CAPACITY)) {
-                System.out.println(Colors.BLUE + "Regular queue is at capacity!" + Colors.RESET);
-                System.out.println(Colors.RED + "Cannot add patient - all applicable queues are full." + Colors.RESET);
-                return;
+            printAdmission(decision);
+            if (!decision.isQueuedHere()) return;
+            TreatmentStation room = stationDispatcher.findStationTreating(patient);
+            if (room != null) {
+                System.out.println(Colors.GREEN + "Sent straight to " + room.getName() + "." + Colors.RESET);
             }
-
-            Patient patient = Patient.createByType(name, age, birthday, notes, isEmergency);
-            patientManagement.queuePatient(patient);
-            System.out.println(Colors.GREEN + "Patient added successfully!" + Colors.RESET);
             displayQueueSummary();
             displayCapacityWarnings();
 
@@ -205,6 +239,47 @@ public class Controller {
         }
     }
 
+    private void printAdmission(AdmissionDecision decision) {
+        switch (decision.getOutcome()) {
+            case ADMITTED:
+                System.out.println(Colors.GREEN + "Patient added successfully!" + Colors.RESET);
+                break;
+            case DIVERTED:
+                System.out.println(Colors.YELLOW + capitalize(decision.getReason()) + " - patient added to " + 
+                                  (decision.getShardKey() != null ? decision.getShardKey() : decision.getLane().getQueueName()) + 
+                                  " instead." + Colors.RESET);
+                break;
+            case OVER_LIMIT:
+                System.out.println(Colors.RED + capitalize(decision.getReason()) + " - patient added over the limit." + Colors.RESET);
+                break;
+            case WAITLISTED:
+                System.out.println(Colors.ORANGE + capitalize(decision.getReason()) + " - patient placed on the " + 
+                                  decision.getLane().name().toLowerCase() + " waitlist and will join the queue " +
+                                  "as soon as a place frees up." + Colors.RESET);
+                break;
+            case DUPLICATE:
+                System.out.println(Colors.YELLOW + "Patient not added - already waiting." + Colors.RESET);
+                break;
+            case REJECTED:
+                System.out.println(Colors.RED + "Cannot add patient - " + decision.getReason() + "." + Colors.RESET);
+                break;
+        }
+    }
+
+    private boolean confirmNotDuplicate(AdmissionDecision decision) {
+        System.out.println(Colors.YELLOW + "Possible duplicate - already waiting with the same birthday and a similar name:" + Colors.RESET);
+        for (Patient existing : decision.getDuplicates()) {
+            System.out.println(existing.getType().getColor() + "  " + existing.getName() + " (" + existing.getType().name() + 
+                              ", born " + existing.getBirthday().format(DATE_FORMATTER) + ", arrived " + 
+                              existing.getArrivalTime().format(TIME_FORMATTER) + ")" + Colors.RESET);
+        }
+        return getBooleanInput("Is this a different person? Add anyway? (y/n): ");
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
     private void showQueueManagement() {
         System.out.println("\n" + Colors.ORANGE + Colors.BOLD + "=== QUEUE MANAGEMENT ===" + Colors.RESET);
         String[][] menuItems = {
@@ -212,7 +287,10 @@ public class Controller {
             {"2", "Optimize Queue Distribution", Colors.YELLOW},
             {"3", "Emergency Override", Colors.RED},
             {"4", "Queue Health Check", Colors.GREEN},
-            {"5", "Back to Main Menu", Colors.WHITE}
+            {"5", "Treatment Rooms", Colors.PURPLE},
+            {"6", "Scheduling Policy", Colors.BLUE},
+            {"7", "Historical Report", Colors.CYAN},
+            {"8", "Back to Main Menu", Colors.WHITE}
         };
         
         for (String[] item : menuItems) {
@@ -220,25 +298,193 @@ public class Controller {
         }
         System.out.println(Colors.ORANGE + Colors.BOLD + "==================" + Colors.RESET);
         
-        int choice = getValidatedInput("Enter choice (1-5): ", Integer::parseInt,
-            c -> c >= 1 && c <= 5, "Please enter a number between 1 and 5.");
+        int choice = getValidatedInput("Enter choice (1-8): ", Integer::parseInt,
+            c -> c >= 1 && c <= 8, "Please enter a number between 1 and 8.");
         
         switch (choice) {
             case 1: viewQueueCapacities(); break;
             case 2: optimizeQueueDistribution(); break;
             case 3: emergencyOverride(); break;
             case 4: queueHealthCheck(); break;
-            case 5: return;
+            case 5: showTreatmentRooms(); break;
+            case 6: changeSchedulingPolicy(); break;
+            case 7: showHistoricalReport(); break;
+            case 8: return;
+        }
+    }
+
+    private void showHistoricalReport() {
+        if (patientArchive == null) {
+            System.out.println(Colors.YELLOW + "No patient archive. Start with --archive-dir <dir> to record served patients." + Colors.RESET);
+            return;
+        }
+        
+        LocalDate from = getOptionalDate("From date (yyyy-MM-dd, optional): ");
+        LocalDate to = getOptionalDate("To date (yyyy-MM-dd, optional): ");
+        try {
+            ArchiveAnalytics analytics = new ArchiveAnalytics(patientArchive);
+            analytics.analyze(from, to).print();
+            System.out.println(Colors.WHITE + "\nScanned in " + 
+                              String.format("%.2f", analytics.getLastScanNanos() / 1e9) + " s" + Colors.RESET);
+        } catch (IOException e) {
+            System.out.println(Colors.RED + "Could not read patient archive: " + e.getMessage() + Colors.RESET);
+        }
+    }
+
+    private LocalDate getOptionalDate(String prompt) {
+        while (true) {
+            String input = getInput(prompt);
+            if (input.isEmpty()) return null;
+            try {
+                return LocalDate.parse(input, DATE_FORMATTER);
+            } catch (DateTimeParseException e) {
+                System.out.println(Colors.RED + "Invalid date format. Use yyyy-MM-dd." + Colors.RESET);
+            }
+        }
+    }
+
+    private void changeSchedulingPolicy() {
+        System.out.println(Colors.WHITE + "Current policy: " + patientManagement.getSchedulingPolicy().getName() + Colors.RESET);
+        System.out.println("[1] Strict priority [2] Aging (prevents starvation) [3] Cancel");
+        int choice = getValidatedInput("Select policy: ", Integer::parseInt,
+            c -> c >= 1 && c <= 3, "Select 1-3.");
+        
+        switch (choice) {
+            case 1:
+                patientManagement.setSchedulingPolicy(new StrictPriorityPolicy());
+                break;
+            case 2:
+                int minutes = getValidatedInput("Minutes of waiting per priority level (default " + 
+                    QueueConfig.AGING_MINUTES_PER_LEVEL + "): ", Integer::parseInt,
+                    m -> m >= 1 && m <= 24 * 60, "Enter minutes between 1 and 1440.");
+                patientManagement.setSchedulingPolicy(new AgingPriorityPolicy(minutes));
+                break;
+            default:
+                return;
+        }
+        System.out.println(Colors.GREEN + "Scheduling policy set to: " + 
+                          patientManagement.getSchedulingPolicy().getName() + Colors.RESET);
+    }
+
+    private void showTreatmentRooms() {
+        System.out.println("\n" + Colors.PURPLE + Colors.BOLD + "=== TREATMENT ROOMS ===" + Colors.RESET);
+        printTreatmentRooms();
+        
+        String[][] menuItems = {
+            {"1", "Open Room", Colors.GREEN},
+            {"2", "Finish Treatment", Colors.CYAN},
+            {"3", "Close Room", Colors.RED},
+            {"4", "Back to Main Menu", Colors.WHITE}
+        };
+        
+        for (String[] item : menuItems) {
+            System.out.println(item[2] + "[" + item[0] + "] " + item[1] + Colors.RESET);
+        }
+        System.out.println(Colors.PURPLE + Colors.BOLD + "==================" + Colors.RESET);
+        
+        int choice = getValidatedInput("Enter choice (1-4): ", Integer::parseInt,
+            c -> c >= 1 && c <= 4, "Please enter a number between 1 and 4.");
+        
+        switch (choice) {
+            case 1: openTreatmentRoom(); break;
+            case 2: finishTreatment(); break;
+            case 3: closeTreatmentRoom(); break;
+            case 4: return;
+        }
+    }
+
+    private void printTreatmentRooms() {
+        List<TreatmentStation> stations = stationDispatcher.getStations();
+        if (stations.isEmpty()) {
+            System.out.println(Colors.YELLOW + "No treatment rooms open." + Colors.RESET);
+            return;
+        }
+        
+        for (int i = 0; i < stations.size(); i++) {
+            TreatmentStation station = stations.get(i);
+            String accepts = station.getEligibleTypes().size() == PatientType.values().length ? "all patients" :
+                station.getEligibleTypes().stream().map(PatientType::name).collect(Collectors.joining("/")) + " only";
+            TreatmentStation.Treatment treatment = station.getCurrentTreatment();
+            String status = treatment == null ? Colors.GREEN + "free" : 
+                treatment.getPatient().getType().getColor() + "treating " + treatment.getPatient().getName() + 
+                " since " + treatment.getStart().format(TIME_FORMATTER);
+            
+            System.out.println(Colors.WHITE + "  " + (i + 1) + ". " + station.getName() + " (" + accepts + ") - " + 
+                              status + Colors.WHITE + " | treated: " + station.getPatientsTreated() + Colors.RESET);
+        }
+    }
+
+    private void openTreatmentRoom() {
+        String name = getInput("Enter room name: ");
+        boolean emergencyOnly = getBooleanInput("Emergency patients only? (y/n): ");
+        TreatmentStation station = emergencyOnly ? TreatmentStation.emergencyOnly(name) : TreatmentStation.general(name);
+        
+        if (stationDispatcher.addStation(station)) {
+            System.out.println(Colors.GREEN + "Room " + name + " opened." + Colors.RESET);
+            printNowTreating(station);
+        } else {
+            System.out.println(Colors.RED + "A room named " + name + " already exists." + Colors.RESET);
+        }
+    }
+
+    private void finishTreatment() {
+        TreatmentStation station = selectStation();
+        if (station == null) return;
+        
+        // The freed room takes the next eligible patient straight away
+        Patient finished = stationDispatcher.completeTreatment(station);
+        if (finished != null) {
+            System.out.println(Colors.GREEN + "Finished treating " + finished.getName() + " in " + station.getName() + "." + Colors.RESET);
+            printNowTreating(station);
+        } else {
+            System.out.println(Colors.YELLOW + station.getName() + " is not treating anyone." + Colors.RESET);
         }
     }
 
+    private void printNowTreating(TreatmentStation station) {
+        TreatmentStation.Treatment treatment = station.getCurrentTreatment();
+        if (treatment != null) {
+            Patient patient = treatment.getPatient();
+            System.out.println(patient.getType().getColor() + station.getName() + " is now treating " + 
+                              patient.getName() + "." + Colors.RESET);
+        }
+    }
+
+    private void closeTreatmentRoom() {
+        TreatmentStation station = selectStation();
+        if (station == null) return;
+        
+        if (stationDispatcher.removeStation(station.getName())) {
+            System.out.println(Colors.GREEN + "Room " + station.getName() + " closed." + Colors.RESET);
+        } else {
+            System.out.println(Colors.RED + "Finish the current treatment in " + station.getName() + " before closing it." + Colors.RESET);
+        }
+    }
+
+    private TreatmentStation selectStation() {
+        List<TreatmentStation> stations = stationDispatcher.getStations();
+        if (stations.isEmpty()) {
+            System.out.println(Colors.RED + "No treatment rooms open." + Colors.RESET);
+            return null;
+        }
+        if (stations.size() == 1) {
+            return stations.get(0);
+        }
+        
+        printTreatmentRooms();
+        int choice = getValidatedInput("Select room (1-" + stations.size() + "): ", Integer::parseInt,
+            c -> c >= 1 && c <= stations.size(), "Select a room between 1 and " + stations.size() + ".");
+        return stations.get(choice - 1);
+    }
+
     private void viewQueueCapacities() {
         System.out.println("\n" + Colors.CYAN + Colors.BOLD + "=== QUEUE CAPACITIES ===" + Colors.RESET);
         
-        int emergencyCount = patientManagement.getEmergencyCount();
-        int seniorCount = patientManagement.getSeniorCount();
-        int regularCount = patientManagement.getRegularCount();
-        int totalCount = patientManagement.getTotalPatientCount();
+        QueueSnapshot snapshot = patientManagement.snapshot();
+        int emergencyCount = snapshot.getCount(PatientType.EMERGENCY);
+        int seniorCount = snapshot.getCount(PatientType.SENIOR);
+        int regularCount = snapshot.getCount(PatientType.REGULAR);
+        int totalCount = snapshot.getTotalCount();
         
         System.out.println(Colors.RED + "Emergency Queue: " + emergencyCount + "/" + 
                           QueueConfig.MAX_EMERGENCY_CAPACITY + " - " + 
@@ -261,6 +507,25 @@ public class Controller {
         System.out.println(Colors.GREEN + "  Senior: " + (QueueConfig.MAX_SENIOR_CAPACITY - seniorCount) + " slots" + Colors.RESET);
         System.out.println(Colors.GREEN + "  Regular: " + (QueueConfig.MAX_REGULAR_CAPACITY - regularCount) + " slots" + Colors.RESET);
         System.out.println(Colors.GREEN + "  Total: " + (QueueConfig.MAX_TOTAL_CAPACITY - totalCount) + " slots" + Colors.RESET);
+        
+        printLaneForecasts();
+    }
+
+    private void printLaneForecasts() {
+        ArrivalForecaster forecaster = patientManagement.getForecaster();
+        System.out.println("\n" + Colors.WHITE + "Forecast (next " + QueueConfig.FORECAST_HORIZON_MINUTES + " min):" + Colors.RESET);
+        
+        for (PatientType type : PatientType.values()) {
+            int count = patientManagement.getCountByType(type);
+            int max = QueueConfig.getMaxCapacityForType(type);
+            double expectedWait = forecaster.getExpectedWaitMinutes(patientManagement.getPatientsAheadOfType(type));
+            
+            System.out.println(type.getColor() + "  " + type.name() + ": " + 
+                              String.format("%.1f", forecaster.getArrivalRate(type)) + " in/min, " + 
+                              String.format("%.1f", forecaster.getServiceRate(type)) + " called/min" + 
+                              " | full in " + ArrivalForecaster.formatMinutes(forecaster.getMinutesToCapacity(type, count, max)) + 
+                              " | new arrival waits " + ArrivalForecaster.formatMinutes(expectedWait) + Colors.RESET);
+        }
     }
 
     private void optimizeQueueDistribution() {
@@ -287,6 +552,18 @@ public class Controller {
             hasOptimizations = true;
         }
         
+        ArrivalForecaster forecaster = patientManagement.getForecaster();
+        for (PatientType type : PatientType.values()) {
+            int count = patientManagement.getCountByType(type);
+            int max = QueueConfig.getMaxCapacityForType(type);
+            if (!QueueConfig.isNearCapacity(count, max) && forecaster.isForecastToFill(type, count, max)) {
+                System.out.println(type.getColor() + "⚠ " + type.getQueueName() + " is filling faster than it is called - full in " + 
+                                  ArrivalForecaster.formatMinutes(forecaster.getMinutesToCapacity(type, count, max)) + 
+                                  ", consider calling more " + type.name().toLowerCase() + " patients" + Colors.RESET);
+                hasOptimizations = true;
+            }
+        }
+        
         if (!hasOptimizations) {
             System.out.println(Colors.GREEN + "✓ Queue distribution is optimal" + Colors.RESET);
         }
@@ -308,16 +585,38 @@ public class Controller {
         LocalDate birthday = getDateInput("Enter birthday (yyyy-MM-dd): ");
         String notes = getInput("Enter emergency notes: ");
         
-        Patient patient = Patient.createEmergency(name, age, birthday, notes);
-        patientManagement.queuePatient(patient);
+        Patient patient = Patient.createEmergency(name, age, birthday, notes, patientManagement.getClock());
+        int waitingBefore = patientManagement.getEmergencyCount();
+        AdmissionDecision decision = patientManagement.admitPatient(patient, AdmissionController.Intent.OVERRIDE);
+        if (decision.getOutcome() == AdmissionDecision.Outcome.DUPLICATE) {
+            if (!confirmNotDuplicate(decision)) {
+                printAdmission(decision);
+                return;
+            }
+            decision = patientManagement.admitPatient(patient, AdmissionController.Intent.OVERRIDE, true);
+        }
+        if (!decision.isQueuedHere()) {
+            printAdmission(decision);
+            return;
+        }
+        int waitingAfter = patientManagement.getEmergencyCount();
+        if (auditLog != null) {
+            auditLog.record("emergency.override", patient, "emergency_waiting",
+                waitingBefore + "/" + QueueConfig.MAX_EMERGENCY_CAPACITY, waitingAfter + "/" + QueueConfig.MAX_EMERGENCY_CAPACITY);
+        }
         System.out.println(Colors.GREEN + "Emergency patient added with override!" + Colors.RESET);
+        TreatmentStation room = stationDispatcher.findStationTreating(patient);
+        if (room != null) {
+            System.out.println(Colors.GREEN + "Sent straight to " + room.getName() + "." + Colors.RESET);
+        }
         displayQueueSummary();
     }
 
     private void queueHealthCheck() {
         System.out.println("\n" + Colors.GREEN + Colors.BOLD + "=== QUEUE HEALTH CHECK ===" + Colors.RESET);
         
-        int totalCount = patientManagement.getTotalPatientCount();
+        QueueSnapshot snapshot = patientManagement.snapshot();
+        int totalCount = snapshot.getTotalCount();
         if (totalCount == 0) {
             System.out.println(Colors.GREEN + "✓ All queues are empty - system ready for patients" + Colors.RESET);
             return;
@@ -327,15 +626,19 @@ public class Controller {
         
         // Check for capacity issues
         boolean healthy = true;
-        int emergencyCount = patientManagement.getEmergencyCount();
-        int seniorCount = patientManagement.getSeniorCount();
-        int regularCount = patientManagement.getRegularCount();
+        int emergencyCount = snapshot.getCount(PatientType.EMERGENCY);
+        int seniorCount = snapshot.getCount(PatientType.SENIOR);
+        int regularCount = snapshot.getCount(PatientType.REGULAR);
+        ArrivalForecaster forecaster = patientManagement.getForecaster();
         
         if (QueueConfig.isAtCapacity(emergencyCount, QueueConfig.MAX_EMERGENCY_CAPACITY)) {
             System.out.println(Colors.RED + "✗ Emergency queue at capacity" + Colors.RESET);
             healthy = false;
         } else if (QueueConfig.isNearCapacity(emergencyCount, QueueConfig.MAX_EMERGENCY_CAPACITY)) {
             System.out.println(Colors.YELLOW + "⚠ Emergency queue near capacity" + Colors.RESET);
+        } else if (forecaster.isForecastToFill(PatientType.EMERGENCY, emergencyCount, QueueConfig.MAX_EMERGENCY_CAPACITY)) {
+            System.out.println(Colors.YELLOW + "⚠ Emergency queue forecast to reach capacity in " + 
+                              ArrivalForecaster.formatMinutes(forecaster.getMinutesToCapacity(PatientType.EMERGENCY, emergencyCount, QueueConfig.MAX_EMERGENCY_CAPACITY)) + Colors.RESET);
         } else {
             System.out.println(Colors.GREEN + "✓ Emergency queue healthy" + Colors.RESET);
         }
@@ -345,6 +648,9 @@ public class Controller {
             healthy = false;
         } else if (QueueConfig.isNearCapacity(seniorCount, QueueConfig.MAX_SENIOR_CAPACITY)) {
             System.out.println(Colors.YELLOW + "⚠ Senior queue near capacity" + Colors.RESET);
+        } else if (forecaster.isForecastToFill(PatientType.SENIOR, seniorCount, QueueConfig.MAX_SENIOR_CAPACITY)) {
+            System.out.println(Colors.YELLOW + "⚠ Senior queue forecast to reach capacity in " + 
+                              ArrivalForecaster.formatMinutes(forecaster.getMinutesToCapacity(PatientType.SENIOR, seniorCount, QueueConfig.MAX_SENIOR_CAPACITY)) + Colors.RESET);
         } else {
             System.out.println(Colors.GREEN + "✓ Senior queue healthy" + Colors.RESET);
         }
@@ -354,6 +660,9 @@ public class Controller {
             healthy = false;
         } else if (QueueConfig.isNearCapacity(regularCount, QueueConfig.MAX_REGULAR_CAPACITY)) {
             System.out.println(Colors.YELLOW + "⚠ Regular queue near capacity" + Colors.RESET);
+        } else if (forecaster.isForecastToFill(PatientType.REGULAR, regularCount, QueueConfig.MAX_REGULAR_CAPACITY)) {
+            System.out.println(Colors.YELLOW + "⚠ Regular queue forecast to reach capacity in " + 
+                              ArrivalForecaster.formatMinutes(forecaster.getMinutesToCapacity(PatientType.REGULAR, regularCount, QueueConfig.MAX_REGULAR_CAPACITY)) + Colors.RESET);
         } else {
             System.out.println(Colors.GREEN + "✓ Regular queue healthy" + Colors.RESET);
         }
@@ -363,6 +672,8 @@ public class Controller {
             healthy = false;
         }
         
+        printLaneForecasts();
+        
         System.out.println("\n" + Colors.CYAN + Colors.BOLD + "Overall Status: " + 
                           (healthy ? Colors.GREEN + "HEALTHY" : Colors.RED + "NEEDS ATTENTION") + Colors.RESET);
     }
@@ -372,8 +683,7 @@ public class Controller {
         
         // Current time and uptime info
         System.out.println(Colors.WHITE + "System Information:" + Colors.RESET);
-        System.out.println(Colors.WHITE + "  Current Time: " + java.time.LocalDateTime.now().format(
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Current Time: " + patientManagement.getTimestampFormatter().now() + Colors.RESET);
         
         // Queue status
         System.out.println(Colors.WHITE + "\nQueue Status:" + Colors.RESET);
@@ -383,6 +693,102 @@ public class Controller {
         System.out.println(Colors.WHITE + "\nDaily Statistics:" + Colors.RESET);
         System.out.println(Colors.GREEN + "  Total Patients Today: " + patientManagement.getTotalPatientsToday() + Colors.RESET);
         System.out.println(Colors.RED + "  Total Emergencies Today: " + patientManagement.getTotalEmergenciesToday() + Colors.RESET);
+        System.out.println(Colors.GREEN + "  Total Calls Today: " + patientManagement.getTotalCallsToday() + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Arrivals (last 15 min / 60 min): " + 
+                          patientManagement.getArrivalsInLastMinutes(15) + " / " + 
+                          patientManagement.getArrivalsInLastMinutes(60) + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Calls (last 15 min / 60 min): " + 
+                          patientManagement.getCallsInLastMinutes(15) + " / " + 
+                          patientManagement.getCallsInLastMinutes(60) + Colors.RESET);
+        
+        System.out.println(Colors.BLUE + "  Scheduling Policy: " + patientManagement.getSchedulingPolicy().getName() + Colors.RESET);
+        System.out.println(Colors.PURPLE + "  Treatment Rooms: " + stationDispatcher.getStationCount() + 
+                          " (" + stationDispatcher.getInTreatmentCount() + " in treatment)" + Colors.RESET);
+        
+        if (replicationPrimary != null) {
+            System.out.println(Colors.WHITE + "\nReplication:" + Colors.RESET);
+            if (replicationPrimary.isConnected()) {
+                System.out.println(Colors.GREEN + "  Standby " + replicationPrimary.getStandbyAddress() + ": connected" + Colors.RESET);
+                System.out.println(Colors.WHITE + "  Lag: " + replicationPrimary.getLagRecords() + " record(s), last ack after " + 
+                                  replicationPrimary.getLastAckLatencyMillis() + " ms" + Colors.RESET);
+            } else {
+                System.out.println(Colors.RED + "  Standby " + replicationPrimary.getStandbyAddress() + ": not connected" + Colors.RESET);
+            }
+            if (replicationPrimary.getDroppedRecords() > 0 || replicationPrimary.getFailedRecords() > 0) {
+                System.out.println(Colors.YELLOW + "  Resyncs: " + replicationPrimary.getDroppedRecords() + " record(s) dropped, " + 
+                                  replicationPrimary.getFailedRecords() + " could not be encoded" + Colors.RESET);
+            }
+        }
+        
+        if (waitingRoomFeed != null) {
+            System.out.println(Colors.WHITE + "\nWaiting Room Feed:" + Colors.RESET);
+            System.out.println(Colors.WHITE + "  http://localhost:" + waitingRoomFeed.getPort() + "/ - " + 
+                              waitingRoomFeed.getSubscriberCount() + " display(s), version " + waitingRoomFeed.getVersion() + Colors.RESET);
+        }
+        
+        if (metricsEndpoint != null) {
+            System.out.println(Colors.WHITE + "\nMetrics:" + Colors.RESET);
+            System.out.println(Colors.WHITE + "  http://localhost:" + metricsEndpoint.getPort() + "/metrics" + Colors.RESET);
+        }
+        
+        if (patientArchive != null) {
+            System.out.println(Colors.WHITE + "\nPatient Archive:" + Colors.RESET);
+            System.out.println(Colors.WHITE + "  " + patientArchive.getDirectory().toAbsolutePath() + " - " + 
+                              patientArchive.getArchivedCount() + " served this session, " + 
+                              patientArchive.getSegmentFiles().size() + " segment file(s)" + Colors.RESET);
+        }
+        
+        if (auditLog != null) {
+            System.out.println(Colors.WHITE + "\nAudit Log:" + Colors.RESET);
+            System.out.println(Colors.WHITE + "  " + auditLog.getFile().toAbsolutePath() + " - " + auditLog.getWrittenCount() + 
+                              " record(s) written, " + auditLog.getPendingCount() + " pending" + Colors.RESET);
+            if (auditLog.getFailure() != null) {
+                System.out.println(Colors.RED + "  Last write failure: " + auditLog.getFailure().getMessage() + Colors.RESET);
+            }
+            if (auditLog.getLostCount() > 0) {
+                System.out.println(Colors.RED + "  " + auditLog.getLostCount() + " record(s) lost" + Colors.RESET);
+            }
+        }
+        
+        if (noteIndex != null) {
+            System.out.println(Colors.WHITE + "\nNote Index:" + Colors.RESET);
+            System.out.println(Colors.WHITE + "  " + noteIndex.getNoteCount() + " note(s), " + noteIndex.getSegmentCount() + 
+                              " segment file(s), " + noteIndex.getUnsavedCount() + " not yet saved" + Colors.RESET);
+            if (noteIndex.getFlushFailure() != null) {
+                System.out.println(Colors.RED + "  Save failed: " + noteIndex.getFlushFailure().getMessage() + Colors.RESET);
+            }
+        }
+        
+        AdmissionController admission = patientManagement.getAdmissionController();
+        System.out.println(Colors.WHITE + "\nAdmission:" + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Policy: " + admission.getPolicy().getName() + Colors.RESET);
+        StringBuilder outcomes = new StringBuilder("  ");
+        for (AdmissionDecision.Outcome outcome : AdmissionDecision.Outcome.values()) {
+            if (outcome == AdmissionDecision.Outcome.DUPLICATE) continue;
+            if (outcomes.length() > 2) outcomes.append(", ");
+            outcomes.append(outcome.getLabel()).append(' ').append(admission.getOutcomeCount(outcome));
+        }
+        System.out.println(Colors.WHITE + outcomes + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Promoted from waitlist: " + admission.getPromotedCount() + 
+                          ", possible duplicates flagged: " + admission.getDuplicatesFlagged() + Colors.RESET);
+        DuplicateDetector duplicates = patientManagement.getDuplicateDetector();
+        System.out.println(Colors.WHITE + "  Duplicate checks: " + duplicates.getCheckCount() + " against " + 
+                          duplicates.getTrackedCount() + " waiting patient(s)" + Colors.RESET);
+        if (admission.getWaitlist().getTotalCount() > 0) {
+            for (PatientType type : PatientType.values()) {
+                System.out.println(type.getColor() + "  " + type.name() + " waitlist: " + 
+                                  admission.getWaitlist().size(type) + Colors.RESET);
+            }
+        }
+        
+        OperationMetrics metrics = patientManagement.getMetrics();
+        System.out.println(Colors.WHITE + "\nOperation Timings (count / avg / max):" + Colors.RESET);
+        for (OperationMetrics.Operation operation : OperationMetrics.Operation.values()) {
+            long count = metrics.getCount(operation);
+            if (count == 0) continue;
+            System.out.println(Colors.WHITE + String.format("  %-16s %8d / %8.1f us / %8.1f us", operation.getLabel(), count,
+                metrics.getTotalNanos(operation) / 1e3 / count, metrics.getMaxNanos(operation) / 1e3) + Colors.RESET);
+        }
         
         // System limits
         System.out.println(Colors.WHITE + "\nSystem Configuration:" + Colors.RESET);
@@ -417,7 +823,7 @@ public class Controller {
         
         Patient patient = patientManagement.findPatientByExactName(name);
         if (patient != null) {
-            patient.addNote(notes);
+            patientManagement.addNote(patient, notes);
             System.out.println(Colors.GREEN + "Notes added successfully!" + Colors.RESET);
         } else {
             System.out.println(Colors.RED + "Patient not found." + Colors.RESET);
@@ -428,7 +834,14 @@ public class Controller {
         if (checkEmptyQueue()) return;
         
         String searchName = getInput("Enter name to search: ");
-        patientManagement.printSearchResults(searchName);
+        String token = null;
+        int shown = 0;
+        while (true) {
+            PatientPage page = patientManagement.printSearchResults(searchName, token, SEARCH_PAGE_SIZE, shown + 1);
+            shown += page.getPatients().size();
+            if (!page.hasMore() || !getBooleanInput("Show more? (y/n): ")) break;
+            token = page.getNextToken();
+        }
     }
 
     private void changePatientType() {
@@ -451,23 +864,37 @@ public class Controller {
             return;
         }
 
-        // Check capacity for new type
         PatientType targetType = PatientType.valueOf(newType.toUpperCase());
-        int currentCount = patientManagement.getCountByType(targetType);
-        int maxCapacity = QueueConfig.getMaxCapacityForType(targetType);
-        
-        if (patient.getType() != targetType && QueueConfig.isAtCapacity(currentCount, maxCapacity)) {
-            System.out.println(Colors.RED + newType + " queue is at capacity!" + Colors.RESET);
-            return;
+        AdmissionController admission = patientManagement.getAdmissionController();
+        if (patient.getType() != targetType && !admission.hasRoom(targetType, AdmissionController.Intent.TYPE_CHANGE)) {
+            System.out.println(Colors.YELLOW + newType + " queue is at capacity - admission policy: " + 
+                              admission.getPolicy().getName() + Colors.RESET);
         }
 
         if (getBooleanInput("Confirm change to " + newType + "? (y/n): ")) {
-            patientManagement.changePatientType(name, newType);
-            displayQueueSummary();
+            AdmissionDecision decision = patientManagement.admitTypeChange(patient, targetType);
+            if (decision.isQueuedHere()) {
+                if (decision.getOutcome() == AdmissionDecision.Outcome.OVER_LIMIT) {
+                    System.out.println(Colors.RED + capitalize(decision.getReason()) + " - moved over the limit." + Colors.RESET);
+                }
+                displayQueueSummary();
+            } else {
+                System.out.println(Colors.RED + "Cannot change type - " + decision.getReason() + "." + Colors.RESET);
+            }
         }
     }
 
     private void viewPatientNoteHistory() {
+        if (noteIndex != null) {
+            System.out.println("[1] One patient's history [2] Search all notes [3] Cancel");
+            int choice = getValidatedInput("Enter choice (1-3): ", Integer::parseInt,
+                c -> c >= 1 && c <= 3, "Select 1-3.");
+            if (choice == 2) {
+                searchNotes();
+                return;
+            }
+            if (choice == 3) return;
+        }
         if (checkEmptyQueue()) return;
         
         patientManagement.printPatients();
@@ -482,12 +909,47 @@ public class Controller {
         }
     }
 
+    // Notes of patients who already left stay searchable
+    private void searchNotes() {
+        String query = getInput("Search notes (use \"quotes\" for phrases): ");
+        List<NoteIndex.Hit> hits = noteIndex.search(query, 20);
+        if (hits.isEmpty()) {
+            System.out.println(Colors.YELLOW + "No notes found." + Colors.RESET);
+            return;
+        }
+
+        Set<Long> waiting = patientManagement.snapshot().patients()
+            .map(Patient::getSequence).collect(Collectors.toSet());
+        System.out.println("\n" + Colors.CYAN + "=== NOTES MATCHING: " + query + " ===" + Colors.RESET);
+        for (NoteIndex.Hit hit : hits) {
+            String status = waiting.contains(hit.getPatientSequence())
+                ? Colors.GREEN + "waiting" : Colors.WHITE + "no longer waiting";
+            System.out.println(Colors.WHITE + "[" + TimestampFormatter.format(hit.getTime()) + "] " + Colors.BOLD + 
+                              hit.getPatientName() + Colors.RESET + " (" + status + Colors.RESET + ")");
+            System.out.println("  " + hit.getText());
+        }
+    }
+
+    // The chosen room finishes its current patient and calls the next one it is eligible for
     private void callNextPatient() {
-        Patient patient = patientManagement.dequeuePatient();
+        TreatmentStation station = selectStation();
+        if (station == null) return;
+        
+        // Finishing hands the room its next patient; an idle room calls one itself
+        Patient finished = stationDispatcher.completeTreatment(station);
+        if (finished != null) {
+            System.out.println(Colors.CYAN + "Finished treating " + finished.getName() + " in " + station.getName() + "." + Colors.RESET);
+        } else {
+            stationDispatcher.callNext(station);
+        }
+        
+        TreatmentStation.Treatment treatment = station.getCurrentTreatment();
+        Patient patient = treatment == null ? null : treatment.getPatient();
         if (patient != null) {
             System.out.println("\n" + Colors.GREEN + "Patient Called: " + patient.getName() + Colors.RESET);
             System.out.println("Type: " + patient.getTypeIcon());
             System.out.println("Age: " + patient.getAge());
+            System.out.println("Room: " + station.getName());
             displayQueueSummary();
         }
     }
@@ -539,7 +1001,7 @@ public class Controller {
     private LocalDate getDateInput(String prompt) {
         return getValidatedInput(prompt, 
             input -> LocalDate.parse(input, DATE_FORMATTER),
-            date -> !date.isAfter(LocalDate.now()) && !date.isBefore(LocalDate.now().minusYears(150)),
+            date -> Patient.isValidBirthday(date, patientManagement.getClock()),
             "Invalid date! Use yyyy-MM-dd format and ensure date is not in future or older than 150 years.");
     }
 
@@ -0,0 +1,26 @@
+// Sends new arrivals that find their lane full to the same lane of another department.
+// The receiving shard admits them as a transfer, so a full partner rejects rather than
+// diverting back.
+public class DivertToShardPolicy implements AdmissionPolicy {
+    private final ShardedQueueManager shards;
+    private final String targetKey;
+
+    public DivertToShardPolicy(ShardedQueueManager shards, String targetKey) {
+        this.shards = shards;
+        this.targetKey = targetKey;
+    }
+
+    @Override
+    public String getName() { return "Divert to " + targetKey; }
+
+    @Override
+    public AdmissionDecision onFull(Patient patient, PatientType requested, AdmissionController.Intent intent,
+                                    AdmissionController admission) {
+        String reason = admission.fullReason(requested, intent);
+        PatientManagement target = shards.getShard(targetKey);
+        if (intent != AdmissionController.Intent.ARRIVAL || target == null || target.getAdmissionController() == admission) {
+            return AdmissionDecision.rejected(requested, reason);
+        }
+        return AdmissionDecision.divertedToShard(requested, targetKey, target, reason);
+    }
+}
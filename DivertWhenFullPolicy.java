@@ -0,0 +1,29 @@
+// Sends a new arrival down to the next lane that fits them and has room: emergencies to
+// Senior (75+) or Regular, seniors to Regular. Type changes and transfers are not diverted.
+public class DivertWhenFullPolicy implements AdmissionPolicy {
+    @Override
+    public String getName() { return "Divert to another lane"; }
+
+    @Override
+    public AdmissionDecision onFull(Patient patient, PatientType requested, AdmissionController.Intent intent,
+                                    AdmissionController admission) {
+        String reason = admission.fullReason(requested, intent);
+        if (intent != AdmissionController.Intent.ARRIVAL || admission.isTotalFull()) {
+            return AdmissionDecision.rejected(requested, reason);
+        }
+        for (PatientType lane = fallback(requested, patient); lane != null; lane = fallback(lane, patient)) {
+            if (admission.hasRoom(lane, intent)) {
+                return AdmissionDecision.diverted(requested, lane, reason);
+            }
+        }
+        return AdmissionDecision.rejected(requested, "all applicable queues are full");
+    }
+
+    private static PatientType fallback(PatientType type, Patient patient) {
+        switch (type) {
+            case EMERGENCY: return patient.getAge() >= 75 ? PatientType.SENIOR : PatientType.REGULAR;
+            case SENIOR: return PatientType.REGULAR;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Flags arrivals who look like someone already waiting or held on the waitlist: same
+// birthday, and a name that matches ignoring case, accents, punctuation and word order,
+// or is one typo away. Each tracked patient is filed under fuzzy keys (birthday plus the
+// name and every one-letter deletion of it) in a counting Bloom filter and an exact map.
+// Most arrivals miss the filter on every key and never reach the map, and the filter
+// grows with the number of keys, so the check costs the same however many are waiting.
+public class DuplicateDetector implements QueueListener {
+    private static final int INITIAL_COUNTERS = 1 << 12;
+    private static final int COUNTERS_PER_KEY = 16;
+    private static final int HASHES = 3;
+
+    // Resized to keep 16 counters per filed key, about 0.5% false positives with 3 hashes
+    private byte[] counters = new byte[INITIAL_COUNTERS];
+    private int keyCount;
+    private final Map<Long, List<Patient>> byKey = new HashMap<>();
+    private final Map<Patient, long[]> tracked = new IdentityHashMap<>();
+    private long checks;
+    private long filterHits;
+
+    @Override
+    public void onPatientQueued(Patient patient) { track(patient); }
+
+    @Override
+    public void onPatientCalled(Patient patient) { untrack(patient); }
+
+    @Override
+    public void onPatientRemoved(Patient patient) { untrack(patient); }
+
+    // Idempotent, so a waitlisted patient is not filed twice when promoted
+    public synchronized void track(Patient patient) {
+        if (tracked.containsKey(patient)) return;
+        long[] keys = keys(compactName(patient.getName()), patient.getBirthday());
+        tracked.put(patient, keys);
+        keyCount += keys.length;
+        if ((long) keyCount * COUNTERS_PER_KEY > counters.length) {
+            resize(counters.length * 2);
+        } else {
+            addToFilter(keys);
+        }
+        for (long key : keys) {
+            byKey.computeIfAbsent(key, k -> new ArrayList<>(1)).add(patient);
+        }
+    }
+
+    private void addToFilter(long[] keys) {
+        for (long key : keys) {
+            for (int i = 0; i < HASHES; i++) {
+                int slot = slot(key, i);
+                // Saturated counters stay put; the filter then only errs towards "maybe"
+                if (counters[slot] != -1) counters[slot]++;
+            }
+        }
+    }
+
+    // Refiles every tracked key, including the patient being tracked
+    private void resize(int size) {
+        counters = new byte[size];
+        for (long[] keys : tracked.values()) {
+            addToFilter(keys);
+        }
+    }
+
+    public synchronized void untrack(Patient patient) {
+        long[] keys = tracked.remove(patient);
+        if (keys == null) return;
+        keyCount -= keys.length;
+        for (long key : keys) {
+            for (int i = 0; i < HASHES; i++) {
+                int slot = slot(key, i);
+                if (counters[slot] != -1) counters[slot]--;
+            }
+            List<Patient> filed = byKey.get(key);
+            filed.remove(patient);
+            if (filed.isEmpty()) byKey.remove(key);
+        }
+    }
+
+    // Tracked patients who are probably the same person, oldest first
+    public synchronized List<Patient> findDuplicates(String name, LocalDate birthday) {
+        checks++;
+        List<Patient> found = new ArrayList<>();
+        String compact = compactName(name);
+        if (compact.isEmpty()) return found;
+        for (long key : keys(compact, birthday)) {
+            if (!mightContain(key)) continue;
+            filterHits++;
+            List<Patient> filed = byKey.get(key);
+            if (filed == null) continue;
+            for (Patient candidate : filed) {
+                if (!found.contains(candidate) && candidate.getBirthday().equals(birthday) &&
+                    withinOneEdit(compact, compactName(candidate.getName()))) {
+                    found.add(candidate);
+                }
+            }
+        }
+        found.sort(PatientLane.ARRIVAL_ORDER);
+        return found;
+    }
+
+    private boolean mightContain(long key) {
+        for (int i = 0; i < HASHES; i++) {
+            if (counters[slot(key, i)] == 0) return false;
+        }
+        return true;
+    }
+
+    private int slot(long key, int i) {
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32) | 1;
+        return (h1 + i * h2) & (counters.length - 1);
+    }
+
+    // The whole name plus each one-letter deletion: two names within one insertion,
+    // deletion, substitution or swap of neighbours always share one of these keys
+    private static long[] keys(String compact, LocalDate birthday) {
+        long day = birthday == null ? Long.MIN_VALUE : birthday.toEpochDay();
+        long[] keys = new long[compact.length() + 1];
+        keys[0] = hash(compact, -1, day);
+        for (int skip = 0; skip < compact.length(); skip++) {
+            keys[skip + 1] = hash(compact, skip, day);
+        }
+        return keys;
+    }
+
+    // FNV-1a over the name without the character at `skip`, finished with a 64-bit mix
+    private static long hash(String text, int skip, long day) {
+        long h = 0xcbf29ce484222325L ^ day;
+        for (int i = 0; i < text.length(); i++) {
+            if (i == skip) continue;
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    // Lower case without accents or punctuation, words sorted and joined: "Müller, Jörg" -> "jorgmuller"
+    static String compactName(String name) {
+        if (name == null) return "";
+        String plain = Normalizer.normalize(name, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT)
+            .replaceAll("[^\\p{L}\\p{N}]+", " ")
+            .trim();
+        if (plain.isEmpty()) return "";
+        String[] words = plain.split(" ");
+        Arrays.sort(words);
+        return String.join("", words);
+    }
+
+    // Optimal string alignment distance of at most one
+    private static boolean withinOneEdit(String a, String b) {
+        if (a.equals(b)) return true;
+        if (Math.abs(a.length() - b.length()) > 1) return false;
+        int i = 0;
+        while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) i++;
+        if (a.length() == b.length()) {
+            if (a.regionMatches(i + 1, b, i + 1, a.length() - i - 1)) return true;
+            return i + 1 < a.length() && a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i) &&
+                a.regionMatches(i + 2, b, i + 2, a.length() - i - 2);
+        }
+        String longer = a.length() > b.length() ? a : b;
+        String shorter = longer == a ? b : a;
+        return longer.regionMatches(i + 1, shorter, i, shorter.length() - i);
+    }
+
+    public synchronized int getTrackedCount() { return tracked.size(); }
+    public synchronized long getCheckCount() { return checks; }
+    public synchronized long getFilterHitCount() { return filterHits; }
+}
@@ -0,0 +1,33 @@
+// Lets emergencies in past the emergency and total limits, up to `headroom` extra places,
+// and leaves every other full-lane case to the wrapped policy
+public class EmergencyOverLimitPolicy implements AdmissionPolicy {
+    private final AdmissionPolicy otherwise;
+    private final int headroom;
+
+    public EmergencyOverLimitPolicy(AdmissionPolicy otherwise, int headroom) {
+        if (headroom <= 0) {
+            throw new IllegalArgumentException("Emergency headroom must be positive.");
+        }
+        this.otherwise = otherwise;
+        this.headroom = headroom;
+    }
+
+    @Override
+    public String getName() {
+        return otherwise.getName() + ", emergencies +" + headroom + " over limit";
+    }
+
+    @Override
+    public AdmissionDecision onFull(Patient patient, PatientType requested, AdmissionController.Intent intent,
+                                    AdmissionController admission) {
+        if (requested == PatientType.EMERGENCY && intent != AdmissionController.Intent.TRANSFER &&
+            admission.getCount(requested) < QueueConfig.MAX_EMERGENCY_CAPACITY + headroom &&
+            admission.getTotalCount() < QueueConfig.MAX_TOTAL_CAPACITY + headroom) {
+            return AdmissionDecision.overLimit(requested, admission.fullReason(requested, intent));
+        }
+        return otherwise.onFull(patient, requested, intent, admission);
+    }
+
+    public AdmissionPolicy getOtherwise() { return otherwise; }
+    public int getHeadroom() { return headroom; }
+}
@@ -0,0 +1,130 @@
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Immutable view of one lane at a single version; safe to iterate while the lane changes
+public class LaneSnapshot implements Iterable<Patient> {
+    private final PatientType type;
+    private final PatientLane.Node root;
+    private final long version;
+
+    LaneSnapshot(PatientType type, PatientLane.Node root, long version) {
+        this.type = type;
+        this.root = root;
+        this.version = version;
+    }
+
+    public PatientType getType() { return type; }
+    public long getVersion() { return version; }
+    public int size() { return PatientLane.size(root); }
+    public boolean isEmpty() { return root == null; }
+
+    // Patients in arrival order; each step costs O(1) amortized
+    @Override
+    public Iterator<Patient> iterator() {
+        InOrder iterator = new InOrder();
+        iterator.pushLeft(root);
+        return iterator;
+    }
+
+    // Patients from the given position in arrival order on; the seek costs O(log n)
+    public Iterator<Patient> iteratorFrom(int index) {
+        InOrder iterator = new InOrder();
+        PatientLane.Node node = root;
+        while (node != null) {
+            int leftSize = PatientLane.size(node.left);
+            if (index < leftSize) {
+                iterator.path.push(node);
+                node = node.left;
+            } else if (index == leftSize) {
+                iterator.path.push(node);
+                break;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return iterator;
+    }
+
+    // Patients who arrived after the given arrival time and sequence number; O(log n) seek,
+    // so a page can resume where the last one stopped even if that patient has left
+    public Iterator<Patient> iteratorAfter(LocalDateTime arrival, long sequence) {
+        InOrder iterator = new InOrder();
+        PatientLane.Node node = root;
+        while (node != null) {
+            int cmp = node.patient.getArrivalTime().compareTo(arrival);
+            if (cmp == 0) cmp = Long.compare(node.patient.getSequence(), sequence);
+            if (cmp > 0) {
+                iterator.path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return iterator;
+    }
+
+    // True if this exact patient is in the lane; O(log n)
+    public boolean contains(Patient patient) {
+        PatientLane.Node node = root;
+        while (node != null) {
+            if (node.patient == patient) return true;
+            int cmp = PatientLane.ARRIVAL_ORDER.compare(patient, node.patient);
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    // Patients in this lane served before the given one under `order`. The order must agree
+    // with arrival order inside the lane (as every SchedulingPolicy does), so those patients
+    // form a prefix and one descent counting left subtree sizes finds it in O(log n).
+    public int countAhead(Patient patient, Comparator<Patient> order) {
+        int ahead = 0;
+        PatientLane.Node node = root;
+        while (node != null) {
+            if (node.patient != patient && order.compare(node.patient, patient) < 0) {
+                ahead += PatientLane.size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return ahead;
+    }
+
+    // Stack of nodes whose left side has been visited and who are still to be returned
+    private static final class InOrder implements Iterator<Patient> {
+        private final Deque<PatientLane.Node> path = new ArrayDeque<>();
+
+        private void pushLeft(PatientLane.Node node) {
+            while (node != null) {
+                path.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() { return !path.isEmpty(); }
+
+        @Override
+        public Patient next() {
+            if (path.isEmpty()) throw new NoSuchElementException();
+            PatientLane.Node node = path.pop();
+            pushLeft(node.right);
+            return node.patient;
+        }
+    }
+
+    public Stream<Patient> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), size(),
+            Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+}
@@ -1,6 +1,138 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 public class Main {
     public static void main(String[] args) {
-        Controller controller = new Controller();
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            QueueSimulator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--analyze")) {
+            ArchiveAnalytics.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--footprint")) {
+            StoreFootprint.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--standby")) {
+            ReplicationStandby.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Picked up before anything reads the queue's clock
+        CoarseClock coarseClock = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--coarse-clock")) {
+                try {
+                    coarseClock = new CoarseClock(Long.parseLong(args[i + 1]));
+                } catch (IllegalArgumentException e) {
+                    System.out.println(Colors.RED + "Could not use coarse clock: " + e.getMessage() + Colors.RESET);
+                }
+            }
+        }
+        PatientManagement patientManagement = coarseClock != null
+            ? new PatientManagement(coarseClock) : new PatientManagement();
+        Controller controller = new Controller(patientManagement);
+
+        ReplicationPrimary replication = null;
+        WaitingRoomFeed feed = null;
+        NoteIndex noteIndex = null;
+        MetricsEndpoint metrics = null;
+        AuditLog auditLog = null;
+        PatientArchive archive = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--replicate-to")) {
+                replication = new ReplicationPrimary(patientManagement, args[i + 1]);
+                controller.setReplicationPrimary(replication);
+            } else if (args[i].equals("--feed-port")) {
+                try {
+                    feed = new WaitingRoomFeed(patientManagement, Integer.parseInt(args[i + 1]));
+                    controller.setWaitingRoomFeed(feed);
+                    System.out.println(Colors.CYAN + "Waiting room display at http://localhost:" + feed.getPort() + "/" + Colors.RESET);
+                } catch (IOException | NumberFormatException e) {
+                    System.out.println(Colors.RED + "Could not start waiting room feed: " + e.getMessage() + Colors.RESET);
+                }
+            } else if (args[i].equals("--metrics-port")) {
+                try {
+                    metrics = new MetricsEndpoint(patientManagement, Integer.parseInt(args[i + 1]));
+                    controller.setMetricsEndpoint(metrics);
+                    System.out.println(Colors.CYAN + "Metrics at http://localhost:" + metrics.getPort() + "/metrics" + Colors.RESET);
+                } catch (IOException | NumberFormatException e) {
+                    System.out.println(Colors.RED + "Could not start metrics endpoint: " + e.getMessage() + Colors.RESET);
+                }
+            } else if (args[i].equals("--audit-dir")) {
+                try {
+                    auditLog = new AuditLog(Paths.get(args[i + 1]), System.getProperty("user.name"), patientManagement.getClock());
+                    patientManagement.addQueueListener(auditLog);
+                    controller.setAuditLog(auditLog);
+                } catch (IOException e) {
+                    System.out.println(Colors.RED + "Could not open audit log: " + e.getMessage() + Colors.RESET);
+                }
+            } else if (args[i].equals("--archive-dir")) {
+                try {
+                    archive = new PatientArchive(Paths.get(args[i + 1]), patientManagement.getClock());
+                    patientManagement.addQueueListener(archive);
+                    controller.setPatientArchive(archive);
+                } catch (IOException e) {
+                    System.out.println(Colors.RED + "Could not open patient archive: " + e.getMessage() + Colors.RESET);
+                }
+            } else if (args[i].equals("--admission")) {
+                try {
+                    patientManagement.getAdmissionController().setPolicy(AdmissionController.parsePolicy(args[i + 1]));
+                } catch (IllegalArgumentException e) {
+                    System.out.println(Colors.RED + "Could not set admission policy: " + e.getMessage() + Colors.RESET);
+                }
+            } else if (args[i].equals("--notes-dir")) {
+                try {
+                    noteIndex = new NoteIndex(Paths.get(args[i + 1]), patientManagement.getClock());
+                    patientManagement.addQueueListener(noteIndex);
+                    controller.setNoteIndex(noteIndex);
+                } catch (IOException e) {
+                    System.out.println(Colors.RED + "Could not open note index: " + e.getMessage() + Colors.RESET);
+                }
+            }
+        }
+
         controller.run();
+
+        if (replication != null) {
+            replication.close();
+        }
+        if (feed != null) {
+            feed.close();
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                System.out.println(Colors.RED + "Could not save patient archive: " + e.getMessage() + Colors.RESET);
+            }
+        }
+        if (auditLog != null) {
+            try {
+                auditLog.close();
+            } catch (IOException e) {
+                System.out.println(Colors.RED + "Could not write audit log: " + e.getMessage() + Colors.RESET);
+            }
+        }
+        if (noteIndex != null) {
+            try {
+                noteIndex.close();
+            } catch (IOException e) {
+                System.out.println(Colors.RED + "Could not save note index: " + e.getMessage() + Colors.RESET);
+            }
+        }
+        if (coarseClock != null) {
+            coarseClock.close();
+        }
     }
 }
@@ -0,0 +1,116 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+
+// Serves operation metrics and lane gauges in the Prometheus text format at /metrics.
+// Binds to the loopback interface only; put a proxy in front to scrape from elsewhere.
+public class MetricsEndpoint implements Closeable {
+    private final PatientManagement patientManagement;
+    private final HttpServer server;
+
+    public MetricsEndpoint(PatientManagement patientManagement, int port) throws IOException {
+        this.patientManagement = patientManagement;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Scrapes are rare, so formatting here may allocate freely
+    String render() {
+        OperationMetrics metrics = patientManagement.getMetrics();
+        StringBuilder text = new StringBuilder(8192);
+
+        header(text, "pms_operation_duration_seconds", "histogram", "Time spent in queue operations");
+        for (OperationMetrics.Operation operation : OperationMetrics.Operation.values()) {
+            String label = "operation=\"" + operation.getLabel() + "\"";
+            long[] buckets = metrics.getCumulativeBuckets(operation);
+            for (int b = 0; b < buckets.length; b++) {
+                String bound = b < OperationMetrics.BUCKET_BOUNDS_NANOS.length
+                    ? seconds(OperationMetrics.BUCKET_BOUNDS_NANOS[b]) : "+Inf";
+                sample(text, "pms_operation_duration_seconds_bucket", label + ",le=\"" + bound + "\"", Long.toString(buckets[b]));
+            }
+            sample(text, "pms_operation_duration_seconds_sum", label, seconds(metrics.getTotalNanos(operation)));
+            sample(text, "pms_operation_duration_seconds_count", label, Long.toString(buckets[buckets.length - 1]));
+        }
+
+        header(text, "pms_operation_max_seconds", "gauge", "Slowest single operation since startup");
+        for (OperationMetrics.Operation operation : OperationMetrics.Operation.values()) {
+            sample(text, "pms_operation_max_seconds", "operation=\"" + operation.getLabel() + "\"",
+                seconds(metrics.getMaxNanos(operation)));
+        }
+
+        header(text, "pms_operation_patients_total", "counter", "Patients queued, called, found or removed by each operation");
+        for (OperationMetrics.Operation operation : OperationMetrics.Operation.values()) {
+            sample(text, "pms_operation_patients_total", "operation=\"" + operation.getLabel() + "\"",
+                Long.toString(metrics.getItems(operation)));
+        }
+
+        QueueSnapshot snapshot = patientManagement.snapshot();
+        LocalDateTime now = LocalDateTime.now(patientManagement.getClock());
+
+        header(text, "pms_lane_depth", "gauge", "Patients waiting in each lane");
+        for (PatientType type : PatientType.values()) {
+            sample(text, "pms_lane_depth", lane(type), Integer.toString(snapshot.getCount(type)));
+        }
+
+        header(text, "pms_lane_capacity", "gauge", "Configured capacity of each lane");
+        for (PatientType type : PatientType.values()) {
+            sample(text, "pms_lane_capacity", lane(type), Integer.toString(QueueConfig.getMaxCapacityForType(type)));
+        }
+
+        header(text, "pms_lane_oldest_wait_seconds", "gauge", "How long the first patient in each lane has waited");
+        for (PatientType type : PatientType.values()) {
+            LaneSnapshot patients = snapshot.getLane(type);
+            long waited = patients.isEmpty() ? 0
+                : Math.max(0, Duration.between(patients.iterator().next().getArrivalTime(), now).getSeconds());
+            sample(text, "pms_lane_oldest_wait_seconds", lane(type), Long.toString(waited));
+        }
+        return text.toString();
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, String value) {
+        text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String lane(PatientType type) {
+        return "lane=\"" + type.name().toLowerCase() + "\"";
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+}
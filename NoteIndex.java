@@ -0,0 +1,662 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over every note written while patients wait, kept up to date through
+// queue events. Notes stay searchable after the patient is called.
+//
+// With a directory, new notes collect in an in-memory table; every FLUSH_NOTES notes the
+// table is frozen and a background writer turns it into an immutable segment file
+// (NoteSegmentFile), so queue operations never wait for the disk. Segments of similar
+// size are merged MERGE_FACTOR at a time, so each note is rewritten about once per size
+// level rather than on every compaction. Only the segments' term dictionaries stay in
+// memory; notes are read from disk when a search needs them.
+public class NoteIndex implements QueueListener, Closeable {
+    private static final int FLUSH_NOTES = 64;
+    private static final int MERGE_FACTOR = 4;
+    private static final long MAX_MERGE_BYTES = 256L * 1024 * 1024;
+    private static final int RECENTLY_REMOVED = 1024;
+    private static final long RETRY_MILLIS = 1000;
+    private static final int CLOSE_ATTEMPTS = 3;
+
+    private final Path directory;
+    private final Clock clock;
+    private final ZoneId zone;
+
+    // Guarded by this: notes not yet in a segment, oldest frozen table first
+    private Memtable active;
+    private final Deque<Memtable> frozen = new ArrayDeque<>();
+    private final Map<Long, Integer> notesSeenByPatient = new HashMap<>();
+    private final Map<Long, Integer> recentlyRemoved = new LinkedHashMap<Long, Integer>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+            return size() > RECENTLY_REMOVED;
+        }
+    };
+    private boolean running = true;
+
+    // Oldest first. Changed only by the writer thread, under the write lock; taken before
+    // this when both are needed
+    private final List<NoteSegmentFile> segments = new ArrayList<>();
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final Thread writer;
+    private volatile IOException flushFailure;
+
+    // Ascending note ids containing one term
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size = 0;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    // Where a search reads candidates from: a note table in memory or a segment on disk
+    interface NoteSource {
+        // Ascending local note ids containing the term; null if none. Callers may modify it.
+        int[] postings(String term) throws IOException;
+
+        NoteSegmentFile.Note readNote(int localId) throws IOException;
+    }
+
+    // Notes not yet in a segment file, indexed by local id in the order they were added.
+    // Frozen tables are never changed again, so searches and the writer read them unlocked.
+    private static final class Memtable implements NoteSource {
+        final long firstId;
+        long[] patientSequences = new long[FLUSH_NOTES];
+        long[] noteMillis = new long[FLUSH_NOTES];
+        int[] nameIds = new int[FLUSH_NOTES];
+        int[] textIds = new int[FLUSH_NOTES];
+        int count = 0;
+        long maxSequence = 0;
+        final StringArena names = new StringArena();
+        final StringArena texts = new StringArena();
+        final Map<String, Postings> postings = new HashMap<>();
+
+        Memtable(long firstId) {
+            this.firstId = firstId;
+        }
+
+        void add(long sequence, long millis, String name, String text) {
+            if (count == patientSequences.length) {
+                int capacity = count * 2;
+                patientSequences = Arrays.copyOf(patientSequences, capacity);
+                noteMillis = Arrays.copyOf(noteMillis, capacity);
+                nameIds = Arrays.copyOf(nameIds, capacity);
+                textIds = Arrays.copyOf(textIds, capacity);
+            }
+            int id = count++;
+            patientSequences[id] = sequence;
+            noteMillis[id] = millis;
+            nameIds[id] = names.intern(name);
+            textIds[id] = texts.intern(text);
+            maxSequence = Math.max(maxSequence, sequence);
+            for (String term : tokenize(text)) {
+                postings.computeIfAbsent(term, t -> new Postings()).add(id);
+            }
+        }
+
+        @Override
+        public int[] postings(String term) {
+            Postings list = postings.get(term);
+            return list == null ? null : Arrays.copyOf(list.ids, list.size);
+        }
+
+        @Override
+        public NoteSegmentFile.Note readNote(int localId) {
+            return new NoteSegmentFile.Note(patientSequences[localId], noteMillis[localId],
+                names.get(nameIds[localId]), texts.get(textIds[localId]));
+        }
+    }
+
+    public static final class Hit {
+        private final long patientSequence;
+        private final String patientName;
+        private final LocalDateTime time;
+        private final String text;
+
+        Hit(long patientSequence, String patientName, LocalDateTime time, String text) {
+            this.patientSequence = patientSequence;
+            this.patientName = patientName;
+            this.time = time;
+            this.text = text;
+        }
+
+        public long getPatientSequence() { return patientSequence; }
+        public String getPatientName() { return patientName; }
+        public LocalDateTime getTime() { return time; }
+        public String getText() { return text; }
+    }
+
+    // In-memory only; nothing is ever frozen or written
+    public NoteIndex(Clock clock) {
+        this.directory = null;
+        this.clock = clock;
+        this.zone = clock.getZone();
+        this.active = new Memtable(0);
+        this.writer = null;
+    }
+
+    // Opens every segment in the directory, creating it if needed
+    public NoteIndex(Path directory, Clock clock) throws IOException {
+        this.directory = directory;
+        this.clock = clock;
+        this.zone = clock.getZone();
+        Files.createDirectories(directory);
+        this.active = new Memtable(openSegments());
+
+        writer = new Thread(this::writeLoop, "note-index-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Returns the id the next note gets
+    private long openSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> found = Files.newDirectoryStream(directory, "notes-*.seg*")) {
+            for (Path file : found) {
+                // Left behind by a write that failed before it could be renamed into place
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null); // zero-padded first ids sort in write order
+
+        long nextId = 0;
+        try {
+            for (Path file : files) {
+                long firstId = firstIdOf(file);
+                if (firstId < nextId) {
+                    // Already part of a merged segment; a crash stopped the merge from deleting it
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                NoteSegmentFile segment = NoteSegmentFile.open(file, firstId);
+                segments.add(segment);
+                // Patients of this run must not share a sequence number with indexed ones
+                Patient.reserveSequence(segment.maxSequence);
+                nextId = firstId + segment.noteCount;
+            }
+        } catch (IOException | RuntimeException e) {
+            closeSegments();
+            throw e;
+        }
+        return nextId;
+    }
+
+    // Queue listener callbacks
+
+    @Override
+    public synchronized void onPatientQueued(Patient patient) {
+        // A patient moved between queues comes back with notes that are already indexed
+        int[] position = {0};
+        Integer returning = recentlyRemoved.remove(patient.getSequence());
+        if (returning != null) {
+            notesSeenByPatient.merge(patient.getSequence(), returning, Integer::sum);
+        }
+        int alreadySeen = notesSeenByPatient.getOrDefault(patient.getSequence(), 0);
+        Patient.forEachNote(patient.getNotes(), (seconds, body) -> {
+            if (position[0]++ < alreadySeen) return;
+            long millis = seconds == Patient.NO_TIMESTAMP
+                ? clock.millis()
+                : LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).atZone(zone).toInstant().toEpochMilli();
+            addNote(patient, millis, body);
+        });
+    }
+
+    @Override
+    public synchronized void onPatientCalled(Patient patient) {
+        // Called patients never come back, so their notes can no longer be re-delivered
+        notesSeenByPatient.remove(patient.getSequence());
+    }
+
+    @Override
+    public synchronized void onPatientRemoved(Patient patient) {
+        // A transfer removes the patient and queues them in another department moments
+        // later, so the count is kept a while in a bounded map rather than dropped
+        Integer seen = notesSeenByPatient.remove(patient.getSequence());
+        if (seen != null) {
+            recentlyRemoved.put(patient.getSequence(), seen);
+        }
+    }
+
+    @Override
+    public synchronized void onNoteAdded(Patient patient, String note) {
+        addNote(patient, clock.millis(), note);
+    }
+
+    @Override
+    public synchronized void onPatientTypeChanged(Patient patient, PatientType oldType) {
+        // Patient.changeType records the change as a note
+        addNote(patient, clock.millis(), patient.getLatestNote());
+    }
+
+    private void addNote(Patient patient, long millis, String text) {
+        if (text == null || text.trim().isEmpty()) return;
+
+        active.add(patient.getSequence(), millis, patient.getName(), text);
+        notesSeenByPatient.merge(patient.getSequence(), 1, Integer::sum);
+
+        if (writer != null && running && active.count >= FLUSH_NOTES) {
+            freezeActive();
+        }
+    }
+
+    // Hands the active table to the writer thread; the caller holds this
+    private void freezeActive() {
+        if (active.count == 0) return;
+        frozen.addLast(active);
+        active = new Memtable(active.firstId + active.count);
+        notifyAll();
+    }
+
+    // Words must all appear; "quoted phrases" must appear as consecutive words.
+    // Newest notes first.
+    public List<Hit> search(String query, int limit) {
+        List<List<String>> clauses = parseQuery(query);
+        List<Hit> hits = new ArrayList<>();
+        if (clauses.isEmpty()) return hits;
+
+        segmentsLock.readLock().lock();
+        try {
+            List<Memtable> unsaved;
+            synchronized (this) {
+                search(active, clauses, limit, hits);
+                unsaved = new ArrayList<>(frozen);
+            }
+            // Ids grow with time, so newer tables and segments are searched first
+            for (int i = unsaved.size() - 1; i >= 0 && hits.size() < limit; i--) {
+                search(unsaved.get(i), clauses, limit, hits);
+            }
+            for (int i = segments.size() - 1; i >= 0 && hits.size() < limit; i--) {
+                search(segments.get(i), clauses, limit, hits);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the note index", e);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+        return hits;
+    }
+
+    private void search(NoteSource source, List<List<String>> clauses, int limit, List<Hit> hits) throws IOException {
+        int[] candidates = null;
+        int candidateCount = 0;
+        for (List<String> clause : clauses) {
+            for (String term : clause) {
+                int[] ids = source.postings(term);
+                if (ids == null) return;
+                if (candidates == null) {
+                    candidates = ids;
+                    candidateCount = ids.length;
+                } else {
+                    candidateCount = intersect(candidates, candidateCount, ids);
+                }
+            }
+        }
+
+        // Local ids grow with time, so walking backwards visits the newest notes first
+        for (int i = candidateCount - 1; i >= 0 && hits.size() < limit; i--) {
+            NoteSegmentFile.Note note = source.readNote(candidates[i]);
+            if (matchesPhrases(note.text, clauses)) {
+                LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(note.millis), zone);
+                hits.add(new Hit(note.sequence, note.name, time, note.text));
+            }
+        }
+    }
+
+    public int getNoteCount() {
+        segmentsLock.readLock().lock();
+        try {
+            long notes = getUnsavedCount();
+            for (NoteSegmentFile segment : segments) {
+                notes += segment.noteCount;
+            }
+            return (int) Math.min(notes, Integer.MAX_VALUE);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        segmentsLock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    public synchronized int getUnsavedCount() {
+        int unsaved = active.count;
+        for (Memtable table : frozen) {
+            unsaved += table.count;
+        }
+        return unsaved;
+    }
+
+    // The last background write or merge that failed, cleared once a write succeeds
+    public IOException getFlushFailure() { return flushFailure; }
+
+    // Hands every note added so far to the writer and waits until it is on disk
+    public void flush() throws IOException {
+        if (writer == null) return;
+        synchronized (this) {
+            freezeActive();
+            while (!frozen.isEmpty()) {
+                if (flushFailure != null) throw flushFailure;
+                if (!writer.isAlive()) throw new IOException("The note index is closed");
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while saving notes", e);
+                }
+            }
+        }
+    }
+
+    // Saves the remaining notes, giving up after a few failed attempts
+    @Override
+    public void close() throws IOException {
+        if (writer == null) return;
+        synchronized (this) {
+            freezeActive();
+            running = false;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int unsaved = getUnsavedCount();
+        closeSegments();
+        if (unsaved > 0) {
+            throw new IOException(unsaved + " note(s) could not be saved", flushFailure);
+        }
+    }
+
+    private void closeSegments() {
+        segmentsLock.writeLock().lock();
+        try {
+            for (NoteSegmentFile segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException ignored) {
+                    // Read-only; nothing is lost
+                }
+            }
+            segments.clear();
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    private void writeLoop() {
+        int closingAttempts = 0;
+        while (true) {
+            Memtable next;
+            synchronized (this) {
+                while (frozen.isEmpty() && running) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (frozen.isEmpty()) return;
+                next = frozen.peekFirst();
+            }
+            if (writeSegment(next)) {
+                flushFailure = null;
+                mergeSegments();
+                continue;
+            }
+            // Notes stay in memory and searchable until a retry succeeds
+            if (!running && ++closingAttempts >= CLOSE_ATTEMPTS) return;
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Writes the oldest frozen table as a segment and swaps it in for the table
+    private boolean writeSegment(Memtable table) {
+        Path target = directory.resolve(segmentName(table.firstId));
+        try {
+            writeFile(target, out -> {
+                for (int id = 0; id < table.count; id++) {
+                    out.note(table.patientSequences[id], table.noteMillis[id],
+                             table.names.get(table.nameIds[id]), table.texts.get(table.textIds[id]));
+                }
+                for (Map.Entry<String, Postings> entry : table.postings.entrySet()) {
+                    out.term(entry.getKey(), entry.getValue().ids, entry.getValue().size);
+                }
+            }, table.maxSequence);
+            NoteSegmentFile segment = NoteSegmentFile.open(target, table.firstId);
+
+            segmentsLock.writeLock().lock();
+            try {
+                segments.add(segment);
+                synchronized (this) {
+                    frozen.removeFirst();
+                    notifyAll();
+                }
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+            return true;
+        } catch (IOException e) {
+            flushFailure = e;
+            synchronized (this) {
+                notifyAll(); // flush stops waiting
+            }
+            return false;
+        }
+    }
+
+    // Merges the newest MERGE_FACTOR segments while they are all of one size level, so
+    // every merge combines segments of similar size; merged segments may cascade upwards
+    private void mergeSegments() {
+        while (segments.size() >= MERGE_FACTOR) {
+            List<NoteSegmentFile> run = new ArrayList<>(segments.subList(segments.size() - MERGE_FACTOR, segments.size()));
+            int level = level(run.get(0).noteCount);
+            long bytes = 0;
+            try {
+                for (NoteSegmentFile segment : run) {
+                    if (level(segment.noteCount) != level) return;
+                    bytes += segment.sizeBytes();
+                }
+                // Very large segments are left alone rather than rewritten again and again
+                if (bytes > MAX_MERGE_BYTES) return;
+                merge(run);
+            } catch (IOException e) {
+                // The segments stay as they are; the next write tries again
+                flushFailure = e;
+                return;
+            }
+        }
+    }
+
+    private void merge(List<NoteSegmentFile> run) throws IOException {
+        NoteSegmentFile first = run.get(0);
+        long maxSequence = 0;
+        TreeSet<String> terms = new TreeSet<>();
+        for (NoteSegmentFile segment : run) {
+            maxSequence = Math.max(maxSequence, segment.maxSequence);
+            for (String term : segment.terms()) terms.add(term);
+        }
+
+        // Named after its first note like the first segment of the run, which it replaces
+        writeFile(first.file, out -> {
+            for (NoteSegmentFile segment : run) {
+                for (int id = 0; id < segment.noteCount; id++) {
+                    NoteSegmentFile.Note note = segment.readNote(id);
+                    out.note(note.sequence, note.millis, note.name, note.text);
+                }
+            }
+            int[] merged = new int[16];
+            for (String term : terms) {
+                int count = 0;
+                int base = 0;
+                for (NoteSegmentFile segment : run) {
+                    int[] ids = segment.postings(term);
+                    if (ids != null) {
+                        if (count + ids.length > merged.length) {
+                            merged = Arrays.copyOf(merged, Math.max(merged.length * 2, count + ids.length));
+                        }
+                        for (int id : ids) merged[count++] = base + id;
+                    }
+                    base += segment.noteCount;
+                }
+                out.term(term, merged, count);
+            }
+        }, maxSequence);
+        NoteSegmentFile segment = NoteSegmentFile.open(first.file, first.firstId);
+
+        segmentsLock.writeLock().lock();
+        try {
+            segments.subList(segments.size() - run.size(), segments.size()).clear();
+            segments.add(segment);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+        // A crash before these are gone is harmless: opening skips segments a merge covers
+        for (NoteSegmentFile old : run) {
+            old.close();
+            if (old != first) Files.deleteIfExists(old.file);
+        }
+    }
+
+    private interface SegmentContent {
+        void writeTo(NoteSegmentFile.Writer out) throws IOException;
+    }
+
+    // Readers never see a half-written segment
+    private static void writeFile(Path target, SegmentContent content, long maxSequence) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (NoteSegmentFile.Writer out = new NoteSegmentFile.Writer(temp, maxSequence)) {
+                content.writeTo(out);
+                out.finish(temp);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+    }
+
+    // 0 for a flushed table, then one more for every MERGE_FACTOR times as many notes
+    private static int level(int notes) {
+        int level = 0;
+        for (long size = (long) FLUSH_NOTES * MERGE_FACTOR; notes >= size; size *= MERGE_FACTOR) {
+            level++;
+        }
+        return level;
+    }
+
+    private static String segmentName(long firstId) {
+        return String.format("notes-%012d.seg", firstId);
+    }
+
+    private static long firstIdOf(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring("notes-".length(), name.length() - ".seg".length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IOException("Unexpected file in the note index directory: " + file, e);
+        }
+    }
+
+    // Keeps candidate ids that also appear in ids; both are ascending
+    private static int intersect(int[] candidates, int count, int[] ids) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            while (j < ids.length && ids[j] < candidates[i]) j++;
+            if (j < ids.length && ids[j] == candidates[i]) candidates[kept++] = candidates[i];
+        }
+        return kept;
+    }
+
+    private static boolean matchesPhrases(String text, List<List<String>> clauses) {
+        List<String> words = null;
+        for (List<String> clause : clauses) {
+            if (clause.size() < 2) continue;
+            if (words == null) words = tokenize(text);
+            if (Collections.indexOfSubList(words, clause) < 0) return false;
+        }
+        return true;
+    }
+
+    // Bare words become one-word clauses; "quoted text" becomes one multi-word clause
+    static List<List<String>> parseQuery(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> words = tokenize(parts[i]);
+            if (i % 2 == 1 && words.size() > 1) {
+                clauses.add(words);
+            } else {
+                for (String word : words) {
+                    clauses.add(List.of(word));
+                }
+            }
+        }
+        return clauses;
+    }
+
+    // Lower-cased runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+}
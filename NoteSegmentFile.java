@@ -0,0 +1,288 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// One immutable file of the note index. Only the term dictionary is kept in memory;
+// postings and notes are read on demand with positional reads, so any number of searches
+// can share the open channel.
+//
+// Layout:
+//   header    magic, format, note count, highest patient sequence (long)
+//   notes     per note: sequence, epoch millis, name, text
+//   offsets   note count + 1 longs: where each note starts, then where the notes end
+//   terms     per term: text, entry count, byte length, delta-encoded local note ids
+//   footer    offsets position, terms position (longs), term count
+// Strings are a byte length and UTF-8, so a note may be longer than writeUTF's 64 KB.
+final class NoteSegmentFile implements NoteIndex.NoteSource, Closeable {
+    private static final int MAGIC = 0x504E4958; // "PNIX"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final int FOOTER_BYTES = 20;
+    private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    final Path file;
+    final long firstId;
+    final int noteCount;
+    final long maxSequence;
+    private final FileChannel channel;
+    private final long offsetsPosition;
+    private final Map<String, Term> terms;
+
+    private static final class Term {
+        final long position;
+        final int entries;
+        final int length;
+
+        Term(long position, int entries, int length) {
+            this.position = position;
+            this.entries = entries;
+            this.length = length;
+        }
+    }
+
+    static final class Note {
+        final long sequence;
+        final long millis;
+        final String name;
+        final String text;
+
+        Note(long sequence, long millis, String name, String text) {
+            this.sequence = sequence;
+            this.millis = millis;
+            this.name = name;
+            this.text = text;
+        }
+    }
+
+    private NoteSegmentFile(Path file, long firstId, int noteCount, long maxSequence, FileChannel channel,
+                            long offsetsPosition, Map<String, Term> terms) {
+        this.file = file;
+        this.firstId = firstId;
+        this.noteCount = noteCount;
+        this.maxSequence = maxSequence;
+        this.channel = channel;
+        this.offsetsPosition = offsetsPosition;
+        this.terms = terms;
+    }
+
+    // firstId is the index-wide id of the segment's first note
+    static NoteSegmentFile open(Path file, long firstId) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) throw new IOException("Not a note index segment: " + file);
+            int format = header.getInt();
+            if (format != FORMAT) throw new IOException("Unsupported note segment format " + format + ": " + file);
+            int noteCount = header.getInt();
+            long maxSequence = header.getLong();
+
+            ByteBuffer footer = readFully(channel, channel.size() - FOOTER_BYTES, FOOTER_BYTES);
+            long offsetsPosition = footer.getLong();
+            long termsPosition = footer.getLong();
+            int termCount = footer.getInt();
+
+            ByteBuffer data = readFully(channel, termsPosition, toLength(channel.size() - FOOTER_BYTES - termsPosition));
+            Map<String, Term> terms = new HashMap<>(termCount * 2);
+            for (int t = 0; t < termCount; t++) {
+                String term = getString(data);
+                int entries = data.getInt();
+                int length = data.getInt();
+                terms.put(term, new Term(termsPosition + data.position(), entries, length));
+                data.position(data.position() + length);
+            }
+            return new NoteSegmentFile(file, firstId, noteCount, maxSequence, channel, offsetsPosition, terms);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Corrupt note segment: " + file, e);
+        }
+    }
+
+    Iterable<String> terms() { return terms.keySet(); }
+
+    long sizeBytes() throws IOException { return channel.size(); }
+
+    @Override
+    public int[] postings(String term) throws IOException {
+        Term entry = terms.get(term);
+        if (entry == null) return null;
+        ByteBuffer data = readFully(channel, entry.position, entry.length);
+        int[] ids = new int[entry.entries];
+        int id = 0;
+        for (int i = 0; i < ids.length; i++) {
+            id += getVarInt(data);
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    @Override
+    public Note readNote(int localId) throws IOException {
+        ByteBuffer bounds = readFully(channel, offsetsPosition + 8L * localId, 16);
+        long start = bounds.getLong();
+        long end = bounds.getLong();
+        ByteBuffer record = readFully(channel, start, toLength(end - start));
+        return new Note(record.getLong(), record.getLong(), getString(record), getString(record));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Streams a new segment: every note first, then every term
+    static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final long maxSequence;
+        private long[] offsets = new long[256];
+        private int noteCount = 0;
+        private long position = HEADER_BYTES;
+        private long termsPosition = -1;
+        private int termCount = 0;
+        private final ByteArrayBuilder deltas = new ByteArrayBuilder();
+
+        Writer(Path file, long maxSequence) throws IOException {
+            OutputStream stream = Files.newOutputStream(file);
+            this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            this.maxSequence = maxSequence;
+            // The note count is not known yet; the header is rewritten by finish
+            out.write(new byte[HEADER_BYTES]);
+        }
+
+        void note(long sequence, long millis, String name, String text) throws IOException {
+            if (termsPosition >= 0) throw new IllegalStateException("Notes must come before terms");
+            if (noteCount == offsets.length) offsets = Arrays.copyOf(offsets, noteCount * 2);
+            offsets[noteCount++] = position;
+            out.writeLong(sequence);
+            out.writeLong(millis);
+            position += 16 + putString(name) + putString(text);
+        }
+
+        // ids are ascending local note ids
+        void term(String term, int[] ids, int count) throws IOException {
+            if (termsPosition < 0) writeOffsets();
+            deltas.reset();
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                deltas.putVarInt(ids[i] - previous);
+                previous = ids[i];
+            }
+            position += putString(term);
+            out.writeInt(count);
+            out.writeInt(deltas.size());
+            out.write(deltas.bytes(), 0, deltas.size());
+            position += 8 + deltas.size();
+            termCount++;
+        }
+
+        // Writes the footer and fills in the header; the caller then renames the file into place
+        void finish(Path file) throws IOException {
+            if (termsPosition < 0) writeOffsets();
+            out.writeLong(offsetsPosition());
+            out.writeLong(termsPosition);
+            out.writeInt(termCount);
+            out.close();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT).putInt(noteCount).putLong(maxSequence).flip();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) channel.write(header, header.position());
+                channel.force(true);
+            }
+        }
+
+        int getNoteCount() { return noteCount; }
+
+        private long offsetsPosition() {
+            return termsPosition - 8L * (noteCount + 1);
+        }
+
+        private void writeOffsets() throws IOException {
+            for (int i = 0; i < noteCount; i++) out.writeLong(offsets[i]);
+            out.writeLong(position);
+            position += 8L * (noteCount + 1);
+            termsPosition = position;
+        }
+
+        private int putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            return 4 + bytes.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // Growable buffer for one term's postings
+    private static final class ByteArrayBuilder {
+        private byte[] bytes = new byte[256];
+        private int size = 0;
+
+        void reset() { size = 0; }
+        int size() { return size; }
+        byte[] bytes() { return bytes; }
+
+        void putVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        private void put(byte b) {
+            if (size == bytes.length) bytes = Arrays.copyOf(bytes, size * 2);
+            bytes[size++] = b;
+        }
+    }
+
+    private static String getString(ByteBuffer data) throws IOException {
+        int length = data.getInt();
+        if (length < 0 || length > MAX_STRING_BYTES || length > data.remaining()) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        String value = new String(data.array(), data.arrayOffset() + data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+
+    private static int getVarInt(ByteBuffer data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = data.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Corrupt variable-length integer");
+    }
+
+    private static int toLength(long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) throw new IOException("Corrupt note segment length " + length);
+        return (int) length;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Note segment is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
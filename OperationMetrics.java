@@ -0,0 +1,99 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts and times queue operations. Recording only bumps preallocated striped counters,
+// so the hot paths allocate nothing; slow operations are also emitted as JFR events while
+// a recording has pms.QueueOperation enabled.
+public class OperationMetrics {
+    public enum Operation {
+        QUEUE("queue"),
+        DEQUEUE("dequeue"),
+        REMOVE("remove"),
+        CHANGE_TYPE("change_type"),
+        SEARCH("search"),
+        CLEAR_TYPE("clear_type"),
+        CLEAR_ALL("clear_all"),
+        CLEAR_AGE_RANGE("clear_age_range");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    // Upper bounds of the latency buckets; the last bucket takes everything slower
+    static final long[] BUCKET_BOUNDS_NANOS = {
+        1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000
+    };
+    private static final int BUCKETS = BUCKET_BOUNDS_NANOS.length + 1;
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LongAdder[] bucketCounts = new LongAdder[OPERATIONS.length * BUCKETS];
+    private final LongAdder[] totalNanos = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] items = new LongAdder[OPERATIONS.length];
+    private final AtomicLongArray maxNanos = new AtomicLongArray(OPERATIONS.length);
+
+    public OperationMetrics() {
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            totalNanos[i] = new LongAdder();
+            items[i] = new LongAdder();
+        }
+    }
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    // `count` is how many patients the operation touched (found, removed, ...)
+    public void record(Operation operation, long startNanos, int count) {
+        long elapsed = System.nanoTime() - startNanos;
+        int op = operation.ordinal();
+        bucketCounts[op * BUCKETS + bucketOf(elapsed)].increment();
+        totalNanos[op].add(elapsed);
+        items[op].add(count);
+
+        long max = maxNanos.get(op);
+        while (elapsed > max && !maxNanos.compareAndSet(op, max, elapsed)) {
+            max = maxNanos.get(op);
+        }
+
+        QueueOperationEvent.emit(operation, elapsed, count);
+    }
+
+    private static int bucketOf(long nanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    public long getCount(Operation operation) {
+        long count = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            count += bucketCounts[operation.ordinal() * BUCKETS + b].sum();
+        }
+        return count;
+    }
+
+    // Operations that finished within the bucket's bound, in bucket order; last is all of them
+    public long[] getCumulativeBuckets(Operation operation) {
+        long[] cumulative = new long[BUCKETS];
+        long running = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            running += bucketCounts[operation.ordinal() * BUCKETS + b].sum();
+            cumulative[b] = running;
+        }
+        return cumulative;
+    }
+
+    public long getTotalNanos(Operation operation) { return totalNanos[operation.ordinal()].sum(); }
+    public long getItems(Operation operation) { return items[operation.ordinal()].sum(); }
+    public long getMaxNanos(Operation operation) { return maxNanos.get(operation.ordinal()); }
+}
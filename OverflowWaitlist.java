@@ -0,0 +1,71 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+// Arrivals held back because their lane was full, one FIFO per PatientType. Held
+// patients are not waiting in any lane, so they do not count against capacity.
+public class OverflowWaitlist {
+    private final Map<PatientType, ArrayDeque<Patient>> held = new EnumMap<>(PatientType.class);
+    // Read without the lock, so freeing a place costs nothing while nobody is held
+    private final AtomicInteger total = new AtomicInteger();
+
+    public OverflowWaitlist() {
+        for (PatientType type : PatientType.values()) {
+            held.put(type, new ArrayDeque<>());
+        }
+    }
+
+    public synchronized void add(Patient patient) {
+        held.get(patient.getType()).addLast(patient);
+        total.incrementAndGet();
+    }
+
+    public synchronized Patient peek(PatientType type) {
+        return held.get(type).peekFirst();
+    }
+
+    public synchronized Patient poll(PatientType type) {
+        Patient patient = held.get(type).pollFirst();
+        if (patient != null) total.decrementAndGet();
+        return patient;
+    }
+
+    public synchronized boolean remove(Patient patient) {
+        if (!held.get(patient.getType()).remove(patient)) return false;
+        total.decrementAndGet();
+        return true;
+    }
+
+    // Drops every held patient matching the filter, e.g. someone who left before being admitted
+    public synchronized List<Patient> removeIf(Predicate<Patient> filter) {
+        List<Patient> removed = new ArrayList<>();
+        for (ArrayDeque<Patient> lane : held.values()) {
+            for (Iterator<Patient> it = lane.iterator(); it.hasNext(); ) {
+                Patient patient = it.next();
+                if (filter.test(patient)) {
+                    it.remove();
+                    removed.add(patient);
+                }
+            }
+        }
+        total.addAndGet(-removed.size());
+        return removed;
+    }
+
+    public synchronized int size(PatientType type) {
+        return held.get(type).size();
+    }
+
+    public int getTotalCount() { return total.get(); }
+    public boolean isEmpty() { return total.get() == 0; }
+
+    // Held patients of one type, oldest first
+    public synchronized List<Patient> getHeld(PatientType type) {
+        return new ArrayList<>(held.get(type));
+    }
+}
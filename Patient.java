@@ -1,6 +1,7 @@
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Patient {
     private String name;
@@ -9,28 +10,66 @@ public class Patient {
     private PatientType type;
     private StringBuilder notesHistory;
     private LocalDateTime arrivalTime;
-    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final long sequence;
+    private final TimestampFormatter timestamps;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    static final long NO_TIMESTAMP = TimestampFormatter.INVALID;
+    private static final int NOTE_PREFIX_LENGTH = "[yyyy-MM-dd HH:mm:ss]: ".length();
 
     public Patient(String name, int age, LocalDate birthday, PatientType type) {
         this(name, age, birthday, type, "");
     }
 
     public Patient(String name, int age, LocalDate birthday, PatientType type, String notes) {
+        this(name, age, birthday, type, notes, Clock.systemDefaultZone());
+    }
+
+    public Patient(String name, int age, LocalDate birthday, PatientType type, String notes, Clock clock) {
         this.name = name;
         this.age = age;
         this.birthday = birthday;
         this.type = type;
         this.notesHistory = new StringBuilder();
-        this.arrivalTime = LocalDateTime.now();
+        this.arrivalTime = LocalDateTime.now(clock);
+        this.sequence = SEQUENCE.incrementAndGet();
+        this.timestamps = TimestampFormatter.forClock(clock);
         
         if (notes != null && !notes.trim().isEmpty()) {
             addNoteWithTimestamp(notes);
         }
     }
 
+    private Patient(long sequence, String name, int age, LocalDate birthday, PatientType type,
+                    LocalDateTime arrivalTime, String notesHistory, Clock clock) {
+        this.name = name;
+        this.age = age;
+        this.birthday = birthday;
+        this.type = type;
+        this.notesHistory = new StringBuilder(notesHistory == null ? "" : notesHistory);
+        this.arrivalTime = arrivalTime;
+        this.sequence = sequence;
+        this.timestamps = TimestampFormatter.forClock(clock);
+        reserveSequence(sequence);
+    }
+
+    // Keeps locally created patients from reusing a sequence number recorded elsewhere
+    static void reserveSequence(long sequence) {
+        SEQUENCE.accumulateAndGet(sequence, Math::max);
+    }
+
+    // Rebuilds a patient exactly as another process recorded it, e.g. on a standby replica
+    static Patient restore(long sequence, String name, int age, LocalDate birthday, PatientType type,
+                           LocalDateTime arrivalTime, String notesHistory, Clock clock) {
+        return new Patient(sequence, name, age, birthday, type, arrivalTime, notesHistory, clock);
+    }
+
     // Static factory methods for convenience
     public static Patient createEmergency(String name, int age, LocalDate birthday, String notes) {
-        return new Patient(name, age, birthday, PatientType.EMERGENCY, notes);
+        return createEmergency(name, age, birthday, notes, Clock.systemDefaultZone());
+    }
+
+    public static Patient createEmergency(String name, int age, LocalDate birthday, String notes, Clock clock) {
+        return new Patient(name, age, birthday, PatientType.EMERGENCY, notes, clock);
     }
 
     public static Patient createSenior(String name, int age, LocalDate birthday, String notes) {
@@ -42,21 +81,33 @@ public class Patient {
     }
 
     public static Patient createByType(String name, int age, LocalDate birthday, String notes, boolean isEmergency) {
+        return createByType(name, age, birthday, notes, isEmergency, Clock.systemDefaultZone());
+    }
+
+    public static Patient createByType(String name, int age, LocalDate birthday, String notes, boolean isEmergency, Clock clock) {
         if (isEmergency) {
-            return createEmergency(name, age, birthday, notes);
+            return new Patient(name, age, birthday, PatientType.EMERGENCY, notes, clock);
         } else if (age >= 75) {
-            return createSenior(name, age, birthday, notes);
+            return new Patient(name, age, birthday, PatientType.SENIOR, notes, clock);
         } else {
-            return createRegular(name, age, birthday, notes);
+            return new Patient(name, age, birthday, PatientType.REGULAR, notes, clock);
         }
     }
 
+    // Not in the future and at most 150 years back, judged by the given clock
+    public static boolean isValidBirthday(LocalDate birthday, Clock clock) {
+        if (birthday == null) return false;
+        LocalDate today = LocalDate.now(clock);
+        return !birthday.isAfter(today) && !birthday.isBefore(today.minusYears(150));
+    }
+
     // Getters
     public String getName() { return name; }
     public int getAge() { return age; }
     public LocalDate getBirthday() { return birthday; }
     public PatientType getType() { return type; }
     public LocalDateTime getArrivalTime() { return arrivalTime; }
+    public long getSequence() { return sequence; }
     public String getPatientType() { return type.name().toLowerCase(); }
     public String getTypeIcon() { return type.getIcon(); }
     public int getPriorityLevel() { return type.getPriority(); }
@@ -86,13 +137,41 @@ public class Patient {
     }
 
     private void addNoteWithTimestamp(String note) {
-        LocalDateTime now = LocalDateTime.now();
-        String timestamp = now.format(TIMESTAMP_FORMATTER);
-        
         if (notesHistory.length() > 0) {
             notesHistory.append("\n");
         }
-        notesHistory.append("[").append(timestamp).append("]: ").append(note);
+        notesHistory.append("[");
+        timestamps.appendNow(notesHistory);
+        notesHistory.append("]: ").append(note);
+    }
+
+    // Receives one note of a history: its local time in epoch seconds (or NO_TIMESTAMP) and text
+    interface NoteVisitor {
+        void visit(long localEpochSecond, String body);
+    }
+
+    // Splits a notes history back into notes; lines without a timestamp continue the previous note
+    static void forEachNote(String history, NoteVisitor visitor) {
+        if (history == null || history.isEmpty()) return;
+
+        long seconds = NO_TIMESTAMP;
+        StringBuilder body = null;
+        for (String line : history.split("\n", -1)) {
+            long stamp = parseNoteTimestamp(line);
+            if (body != null && stamp == NO_TIMESTAMP) {
+                body.append("\n").append(line);
+                continue;
+            }
+            if (body != null) visitor.visit(seconds, body.toString());
+            seconds = stamp;
+            body = new StringBuilder(stamp == NO_TIMESTAMP ? line : line.substring(NOTE_PREFIX_LENGTH));
+        }
+        visitor.visit(seconds, body.toString());
+    }
+
+    private static long parseNoteTimestamp(String line) {
+        if (line.length() < NOTE_PREFIX_LENGTH || line.charAt(0) != '[' || !line.startsWith("]: ", 20)) return NO_TIMESTAMP;
+        return TimestampFormatter.parseLocalEpochSecond(line, 1);
     }
 
     public void setNotes(String notes) { addNote(notes); }
@@ -128,8 +207,7 @@ public class Patient {
 
     // Setter for birthday
     public void setBirthday(LocalDate birthday) {
-        if (birthday != null && !birthday.isAfter(LocalDate.now()) && 
-            !birthday.isBefore(LocalDate.now().minusYears(150))) {
+        if (isValidBirthday(birthday, timestamps.getClock())) {
             this.birthday = birthday;
         }
     }
@@ -0,0 +1,159 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+// History of served patients. Every called patient is appended to an in-memory batch that
+// is written out as an immutable columnar segment file (see ArchiveSegmentFile) once it
+// fills up and on close, so months of history become many independent files that
+// analytics can scan in parallel.
+public class PatientArchive implements QueueListener, Closeable {
+    static final int SEGMENT_RECORDS = 4096;
+
+    private final Path directory;
+    private final Clock clock;
+    private final ZoneId zone;
+    private final List<Path> segmentFiles = new ArrayList<>();
+    private Segment open = new Segment(SEGMENT_RECORDS);
+    private int nextSegmentNumber = 1;
+    private long archivedCount = 0;
+
+    // Served patients as parallel columns; times are epoch milliseconds
+    static final class Segment {
+        long[] sequences;
+        long[] arrivalMillis;
+        long[] calledMillis;
+        byte[] types;
+        byte[] ages;
+        String[] names;
+        int size;
+
+        Segment(int capacity) {
+            sequences = new long[capacity];
+            arrivalMillis = new long[capacity];
+            calledMillis = new long[capacity];
+            types = new byte[capacity];
+            ages = new byte[capacity];
+            names = new String[capacity];
+        }
+
+        void add(long sequence, long arrival, long called, int type, int age, String name) {
+            if (size == sequences.length) {
+                int capacity = Math.max(16, size * 2);
+                sequences = Arrays.copyOf(sequences, capacity);
+                arrivalMillis = Arrays.copyOf(arrivalMillis, capacity);
+                calledMillis = Arrays.copyOf(calledMillis, capacity);
+                types = Arrays.copyOf(types, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                names = Arrays.copyOf(names, capacity);
+            }
+            sequences[size] = sequence;
+            arrivalMillis[size] = arrival;
+            calledMillis[size] = called;
+            types[size] = (byte) type;
+            ages[size] = (byte) age;
+            names[size] = name;
+            size++;
+        }
+
+        // Only the given columns are allocated; the others stay empty
+        Segment(EnumSet<ArchiveSegmentFile.Column> columns, int rows) {
+            sequences = new long[columns.contains(ArchiveSegmentFile.Column.SEQUENCE) ? rows : 0];
+            arrivalMillis = new long[columns.contains(ArchiveSegmentFile.Column.ARRIVAL) ? rows : 0];
+            calledMillis = new long[columns.contains(ArchiveSegmentFile.Column.CALLED) ? rows : 0];
+            types = new byte[columns.contains(ArchiveSegmentFile.Column.TYPE) ? rows : 0];
+            ages = new byte[columns.contains(ArchiveSegmentFile.Column.AGE) ? rows : 0];
+            names = new String[columns.contains(ArchiveSegmentFile.Column.NAME) ? rows : 0];
+        }
+
+        // Independent copy of the first `count` rows
+        Segment copy(int count) {
+            Segment copy = new Segment(0);
+            copy.sequences = Arrays.copyOf(sequences, count);
+            copy.arrivalMillis = Arrays.copyOf(arrivalMillis, count);
+            copy.calledMillis = Arrays.copyOf(calledMillis, count);
+            copy.types = Arrays.copyOf(types, count);
+            copy.ages = Arrays.copyOf(ages, count);
+            copy.names = Arrays.copyOf(names, count);
+            copy.size = count;
+            return copy;
+        }
+    }
+
+    public PatientArchive(Path directory, Clock clock) throws IOException {
+        this.directory = directory;
+        this.clock = clock;
+        this.zone = clock.getZone();
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "archive-*.seg")) {
+            for (Path file : files) {
+                segmentFiles.add(file);
+            }
+        }
+        segmentFiles.sort(null);
+        if (!segmentFiles.isEmpty()) {
+            String last = segmentFiles.get(segmentFiles.size() - 1).getFileName().toString();
+            nextSegmentNumber = Integer.parseInt(last.substring("archive-".length(), last.length() - ".seg".length())) + 1;
+        }
+    }
+
+    @Override
+    public void onPatientCalled(Patient patient) {
+        long arrival = patient.getArrivalTime().atZone(zone).toInstant().toEpochMilli();
+        archive(patient.getSequence(), arrival, clock.millis(), patient.getType(), patient.getAge(), patient.getName());
+    }
+
+    // Also used to import history recorded elsewhere
+    public synchronized void archive(long sequence, long arrivalMillis, long calledMillis,
+                                     PatientType type, int age, String name) {
+        open.add(sequence, arrivalMillis, calledMillis, type.ordinal(), age, name);
+        archivedCount++;
+        if (open.size >= SEGMENT_RECORDS) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // The batch stays in memory and is retried with the next flush
+            }
+        }
+    }
+
+    // Writes the open batch as a new segment
+    public synchronized void flush() throws IOException {
+        if (open.size == 0) return;
+        Path target = directory.resolve(String.format("archive-%06d.seg", nextSegmentNumber));
+        ArchiveSegmentFile.write(target, open);
+        segmentFiles.add(target);
+        nextSegmentNumber++;
+        open = new Segment(SEGMENT_RECORDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    // Segment files written so far, oldest first
+    public synchronized List<Path> getSegmentFiles() {
+        return new ArrayList<>(segmentFiles);
+    }
+
+    // Patients served since the last flush, as an independent copy
+    public synchronized Segment getOpenSegment() {
+        return open.copy(open.size);
+    }
+
+    public synchronized long getArchivedCount() { return archivedCount; }
+    public Path getDirectory() { return directory; }
+    public ZoneId getZone() { return zone; }
+
+    static Segment readSegment(Path file) throws IOException {
+        return ArchiveSegmentFile.read(file, ArchiveSegmentFile.ALL_COLUMNS, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+}
@@ -7,12 +7,17 @@ import java.util.function.Predicate;
 public class PatientEditor {
     private PatientManagement patientManagement;
     private Scanner scanner;
+    private AuditLog auditLog;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
     public PatientEditor(PatientManagement patientManagement, Scanner scanner) {
         this.patientManagement = patientManagement;
         this.scanner = scanner;
     }
+
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
     
     public void editPatientInformation() {
         if (patientManagement.getTotalPatientCount() == 0) {
@@ -69,7 +74,11 @@ public class PatientEditor {
                           " " + patient.getTypeIcon() + Colors.RESET);
         System.out.println(Colors.WHITE + "  Priority: " + patient.getPriorityLevel() + Colors.RESET);
         System.out.println(Colors.WHITE + "  Arrival: " + 
-                          patient.getArrivalTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + Colors.RESET);
+                          TimestampFormatter.format(patient.getArrivalTime()) + Colors.RESET);
+        QueuePosition position = patientManagement.getPositionInLine(patient);
+        if (position != null) {
+            System.out.println(Colors.CYAN + "  Place in Line: " + position.describe() + Colors.RESET);
+        }
         
         if (patient.hasNotes()) {
             System.out.println(Colors.YELLOW + "  Latest Note: " + patient.getLatestNote() + Colors.RESET);
@@ -135,7 +144,8 @@ public class PatientEditor {
         if (confirmChange("name", oldName, newName)) {
             // Need to use reflection or create setName method in Patient class
             // For now, we'll add a note about the name change
-            patient.addNote("Name change requested from '" + oldName + "' to '" + newName + "' - requires manual update");
+            patientManagement.addNote(patient, "Name change requested from '" + oldName + "' to '" + newName + "' - requires manual update");
+            auditEdit(patient, "name", oldName, newName);
             System.out.println(Colors.YELLOW + "Name change noted. Manual update required." + Colors.RESET);
             System.out.println(Colors.CYAN + "Note: Patient class needs setName() method for full functionality." + Colors.RESET);
         }
@@ -156,7 +166,8 @@ public class PatientEditor {
         if (confirmChange("age", String.valueOf(oldAge), String.valueOf(newAge))) {
             // Need to use reflection or create setAge method in Patient class
             // For now, we'll add a note about the age change
-            patient.addNote("Age change requested from " + oldAge + " to " + newAge + " - requires manual update");
+            patientManagement.addNote(patient, "Age change requested from " + oldAge + " to " + newAge + " - requires manual update");
+            auditEdit(patient, "age", String.valueOf(oldAge), String.valueOf(newAge));
             
             // Check if patient type should be updated based on new age
             if (newAge >= 75 && patient.getType() == PatientType.REGULAR) {
@@ -182,7 +193,8 @@ public class PatientEditor {
         if (confirmChange("birthday", oldBirthday.toString(), newBirthday.toString())) {
             // Need to use reflection or create setBirthday method in Patient class
             // For now, we'll add a note about the birthday change
-            patient.addNote("Birthday change requested from " + oldBirthday + " to " + newBirthday + " - requires manual update");
+            patientManagement.addNote(patient, "Birthday change requested from " + oldBirthday + " to " + newBirthday + " - requires manual update");
+            auditEdit(patient, "birthday", oldBirthday.toString(), newBirthday.toString());
             System.out.println(Colors.YELLOW + "Birthday change noted. Manual update required." + Colors.RESET);
             System.out.println(Colors.CYAN + "Note: Patient class needs setBirthday() method for full functionality." + Colors.RESET);
         }
@@ -209,10 +221,12 @@ public class PatientEditor {
         }
         
         if (confirmChange("patient type", oldType.name(), newType.name())) {
-            // Remove and re-add to update queue priority
-            patientManagement.removePatient(patient.getName());
-            patient.changeType(newType);
-            patientManagement.queuePatient(patient);
+            // Moves lanes in place, keeping the patient's arrival time and listeners informed
+            AdmissionDecision decision = patientManagement.admitTypeChange(patient, newType);
+            if (!decision.isQueuedHere()) {
+                System.out.println(Colors.RED + "Cannot change type - " + decision.getReason() + "." + Colors.RESET);
+                return;
+            }
             
             System.out.println(Colors.GREEN + "Patient type updated successfully!" + Colors.RESET);
             System.out.println(Colors.CYAN + "Patient moved to " + newType.getQueueName() + Colors.RESET);
@@ -221,10 +235,17 @@ public class PatientEditor {
     
     private void addNote(Patient patient) {
         String note = getInput("Enter note: ");
-        patient.addNote(note);
+        patientManagement.addNote(patient, note);
         System.out.println(Colors.GREEN + "Note added successfully!" + Colors.RESET);
     }
     
+    // Requested corrections; the resulting note and type changes are audited as queue events
+    private void auditEdit(Patient patient, String field, String before, String after) {
+        if (auditLog != null) {
+            auditLog.record("edit.requested", patient, field, before, after);
+        }
+    }
+    
     private boolean confirmChange(String field, String oldValue, String newValue) {
         System.out.println(Colors.YELLOW + "Change " + field + " from '" + oldValue + 
                           "' to '" + newValue + "'?" + Colors.RESET);
@@ -269,7 +290,7 @@ public class PatientEditor {
     private LocalDate getDateInput(String prompt) {
         return getValidatedInput(prompt, 
             input -> LocalDate.parse(input, DATE_FORMATTER),
-            date -> !date.isAfter(LocalDate.now()) && !date.isBefore(LocalDate.now().minusYears(150)),
+            date -> Patient.isValidBirthday(date, patientManagement.getClock()),
             "Invalid date! Use yyyy-MM-dd format and ensure date is not in future or older than 150 years.");
     }
     
@@ -0,0 +1,199 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// One queue per PatientType, ordered by arrival. The lane is an immutable search tree
+// behind an atomic reference: writers swap in a new root with compare-and-set, and
+// readers take an O(1) snapshot of the current root that no later change can disturb.
+public class PatientLane implements Iterable<Patient> {
+    static final Comparator<Patient> ARRIVAL_ORDER = Comparator.comparing(Patient::getArrivalTime)
+        .thenComparingLong(Patient::getSequence);
+
+    private final PatientType type;
+    private final AtomicReference<State> state = new AtomicReference<>(new State(null, 0));
+
+    // Root and version change together, so a snapshot's version identifies its contents
+    private static final class State {
+        final Node root;
+        final long version;
+
+        State(Node root, long version) {
+            this.root = root;
+            this.version = version;
+        }
+    }
+
+    // Treap node: ordered by arrival, heap-ordered by a priority derived from the sequence
+    // number, which keeps the tree balanced in expectation. Size makes rank lookups O(log n).
+    static final class Node {
+        final Patient patient;
+        final Node left;
+        final Node right;
+        final int size;
+        final int priority;
+
+        Node(Patient patient, Node left, Node right, int priority) {
+            this.patient = patient;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+            this.priority = priority;
+        }
+
+        Node withLeft(Node newLeft) { return new Node(patient, newLeft, right, priority); }
+        Node withRight(Node newRight) { return new Node(patient, left, newRight, priority); }
+    }
+
+    public PatientLane(PatientType type) {
+        this.type = type;
+    }
+
+    // False if the patient is already in the lane
+    public boolean add(Patient patient) {
+        Node node = new Node(patient, null, null, priorityOf(patient));
+        while (true) {
+            State current = state.get();
+            if (contains(current.root, patient)) return false;
+            if (state.compareAndSet(current, new State(insert(current.root, node), current.version + 1))) return true;
+        }
+    }
+
+    // Atomically claims the head; two concurrent callers never receive the same patient
+    public Patient poll() {
+        while (true) {
+            State current = state.get();
+            if (current.root == null) return null;
+            Patient first = first(current.root);
+            if (state.compareAndSet(current, new State(removeFirst(current.root), current.version + 1))) {
+                return first;
+            }
+        }
+    }
+
+    public Patient peek() {
+        Node root = state.get().root;
+        return root == null ? null : first(root);
+    }
+
+    public boolean remove(Patient patient) {
+        while (true) {
+            State current = state.get();
+            Node updated = remove(current.root, patient);
+            if (updated == current.root) return false;
+            if (state.compareAndSet(current, new State(updated, current.version + 1))) return true;
+        }
+    }
+
+    public List<Patient> removeIf(Predicate<Patient> filter) {
+        List<Patient> removed = new ArrayList<>();
+        for (Patient patient : snapshot()) {
+            if (filter.test(patient) && remove(patient)) {
+                removed.add(patient);
+            }
+        }
+        return removed;
+    }
+
+    public List<Patient> clear() {
+        return removeIf(p -> true);
+    }
+
+    // O(1): later changes build new roots and never touch the nodes a snapshot holds
+    public LaneSnapshot snapshot() {
+        State current = state.get();
+        return new LaneSnapshot(type, current.root, current.version);
+    }
+
+    public PatientType getType() { return type; }
+    public int size() { return size(state.get().root); }
+    public boolean isEmpty() { return state.get().root == null; }
+    public long getVersion() { return state.get().version; }
+    public Stream<Patient> stream() { return snapshot().stream(); }
+
+    @Override
+    public Iterator<Patient> iterator() { return snapshot().iterator(); }
+
+    // Persistent tree operations; each returns a new root and shares untouched subtrees
+
+    static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int priorityOf(Patient patient) {
+        long mixed = patient.getSequence() * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    private static boolean contains(Node node, Patient patient) {
+        while (node != null) {
+            int cmp = ARRIVAL_ORDER.compare(patient, node.patient);
+            if (cmp == 0) return true;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) return added;
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added.patient);
+            return new Node(added.patient, parts[0], parts[1], added.priority);
+        }
+        if (ARRIVAL_ORDER.compare(added.patient, node.patient) < 0) {
+            return node.withLeft(insert(node.left, added));
+        }
+        return node.withRight(insert(node.right, added));
+    }
+
+    // Splits into patients ordered before the key and the rest
+    private static Node[] split(Node node, Patient key) {
+        if (node == null) return new Node[2];
+        if (ARRIVAL_ORDER.compare(node.patient, key) < 0) {
+            Node[] parts = split(node.right, key);
+            parts[0] = node.withRight(parts[0]);
+            return parts;
+        }
+        Node[] parts = split(node.left, key);
+        parts[1] = node.withLeft(parts[1]);
+        return parts;
+    }
+
+    // Joins two trees where every patient in the left one comes first
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            return left.withRight(merge(left.right, right));
+        }
+        return right.withLeft(merge(left, right.left));
+    }
+
+    // Returns the same root when the patient is not in the tree
+    private static Node remove(Node node, Patient patient) {
+        if (node == null) return null;
+        int cmp = ARRIVAL_ORDER.compare(patient, node.patient);
+        if (cmp == 0) return merge(node.left, node.right);
+        if (cmp < 0) {
+            Node left = remove(node.left, patient);
+            return left == node.left ? node : node.withLeft(left);
+        }
+        Node right = remove(node.right, patient);
+        return right == node.right ? node : node.withRight(right);
+    }
+
+    private static Node removeFirst(Node node) {
+        if (node.left == null) return node.right;
+        return node.withLeft(removeFirst(node.left));
+    }
+
+    private static Patient first(Node node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.patient;
+    }
+}
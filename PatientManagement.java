@@ -1,65 +1,368 @@
+import java.time.Clock;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class PatientManagement {
-    private PriorityQueue<Patient> patientQueue;
-    private int totalPatientsToday = 0;
-    private int totalEmergenciesToday = 0;
+    static final PatientType[] PRIORITY_ORDER = Arrays.stream(PatientType.values())
+        .sorted(Comparator.comparingInt(PatientType::getPriority))
+        .toArray(PatientType[]::new);
+    private static final Set<PatientType> ALL_TYPES = EnumSet.allOf(PatientType.class);
+
+    private Map<PatientType, PatientLane> lanes = new EnumMap<>(PatientType.class);
+    private TrafficCounters trafficCounters;
+    private ArrivalForecaster forecaster;
+    private TimestampFormatter timestamps;
+    private volatile boolean verbose = true;
+    private volatile SchedulingPolicy schedulingPolicy = new StrictPriorityPolicy();
+    private List<QueueListener> listeners = new CopyOnWriteArrayList<>();
+    private final OperationMetrics metrics = new OperationMetrics();
+    private final AdmissionController admission = new AdmissionController(this);
+    private final DuplicateDetector duplicates = new DuplicateDetector();
+
+    // Listener events in the order the lanes changed. Each lane change and its event are
+    // made under the lane's lock; delivery happens outside any lane lock, one thread at a
+    // time, so a listener never sees a call before the arrival it belongs to and may
+    // itself change the queue (the admission controller promotes from the waitlist).
+    private final ConcurrentLinkedQueue<QueueEvent> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+
+    private static final class QueueEvent {
+        enum Kind { QUEUED, CALLED, REMOVED, TYPE_CHANGED, NOTE_ADDED }
+
+        final Kind kind;
+        final Patient patient;
+        final PatientType oldType;
+        final String note;
+
+        QueueEvent(Kind kind, Patient patient, PatientType oldType, String note) {
+            this.kind = kind;
+            this.patient = patient;
+            this.oldType = oldType;
+            this.note = note;
+        }
+    }
 
     public PatientManagement() {
-        this.patientQueue = new PriorityQueue<>(
-            Comparator.comparing((Patient p) -> p.getType().getPriority())
-                     .thenComparing(Patient::getArrivalTime)
-        );
+        this(Clock.systemDefaultZone());
     }
 
-    public void queuePatient(Patient patient) {
-        patientQueue.offer(patient);
-        totalPatientsToday++;
+    public PatientManagement(Clock clock) {
+        this.trafficCounters = new TrafficCounters(clock);
+        this.forecaster = new ArrivalForecaster(clock);
+        this.timestamps = TimestampFormatter.forClock(clock);
+        for (PatientType type : PatientType.values()) {
+            lanes.put(type, new PatientLane(type));
+        }
+        listeners.add(duplicates);
+        listeners.add(admission);
+    }
+
+    // False if the patient is already waiting in their lane; nothing is counted or reported then
+    public boolean queuePatient(Patient patient) {
+        return enqueue(patient, true);
+    }
+
+    // A patient moving in from another department was already counted as an arrival there
+    private boolean enqueue(Patient patient, boolean newArrival) {
+        long start = OperationMetrics.start();
+        PatientLane lane = lanes.get(patient.getType());
+        synchronized (lane) {
+            if (!lane.add(patient)) return false;
+            publish(QueueEvent.Kind.QUEUED, patient, null, null);
+        }
+        if (newArrival) {
+            trafficCounters.record(TrafficCounters.Event.ARRIVAL);
+            forecaster.recordArrival(patient.getType());
+            if (patient.getType() == PatientType.EMERGENCY) {
+                trafficCounters.record(TrafficCounters.Event.EMERGENCY);
+            }
+        }
         
-        if (patient.getType() == PatientType.EMERGENCY) {
-            totalEmergenciesToday++;
+        if (verbose) {
+            System.out.println(patient.getType().getColor() + 
+                              patient.getType().name() + " patient " + 
+                              patient.getName() + " added to queue." + Colors.RESET);
         }
         
-        System.out.println(patient.getType().getColor() + 
-                          patient.getType().name() + " patient " + 
-                          patient.getName() + " added to queue." + Colors.RESET);
+        deliverEvents();
+        metrics.record(OperationMetrics.Operation.QUEUE, start, 1);
+        return true;
+    }
+
+    private void publish(QueueEvent.Kind kind, Patient patient, PatientType oldType, String note) {
+        events.add(new QueueEvent(kind, patient, oldType, note));
     }
 
+    // Whoever finds no delivery in progress delivers every pending event, including those
+    // published by other threads meanwhile; the others return at once
+    private void deliverEvents() {
+        while (!events.isEmpty() && delivering.compareAndSet(false, true)) {
+            try {
+                QueueEvent event;
+                while ((event = events.poll()) != null) {
+                    deliver(event);
+                }
+            } finally {
+                delivering.set(false);
+            }
+        }
+    }
+
+    private void deliver(QueueEvent event) {
+        for (QueueListener listener : listeners) {
+            switch (event.kind) {
+                case QUEUED: listener.onPatientQueued(event.patient); break;
+                case CALLED: listener.onPatientCalled(event.patient); break;
+                case REMOVED: listener.onPatientRemoved(event.patient); break;
+                case TYPE_CHANGED: listener.onPatientTypeChanged(event.patient, event.oldType); break;
+                case NOTE_ADDED: listener.onNoteAdded(event.patient, event.note); break;
+            }
+        }
+    }
+
+    // Queues a new arrival if the admission policy lets them in: possibly into another lane,
+    // another department or the overflow waitlist. queuePatient itself never checks capacity,
+    // so replicated and replayed arrivals are applied as recorded.
+    public AdmissionDecision admitPatient(Patient patient) {
+        return admitPatient(patient, AdmissionController.Intent.ARRIVAL);
+    }
+
+    public AdmissionDecision admitPatient(Patient patient, AdmissionController.Intent intent) {
+        return admitPatient(patient, intent, false);
+    }
+
+    // allowDuplicate: staff confirmed the patient is not someone already waiting. The
+    // duplicate check and the queueing share the admission lock, so two desks entering
+    // the same person at once cannot both get through.
+    public AdmissionDecision admitPatient(Patient patient, AdmissionController.Intent intent, boolean allowDuplicate) {
+        if (!fitsLane(patient, patient.getType())) {
+            return AdmissionDecision.rejected(patient.getType(), SENIOR_AGE_RULE);
+        }
+        AdmissionDecision decision;
+        synchronized (admission) {
+            List<Patient> found = allowDuplicate ? Collections.emptyList()
+                : duplicates.findDuplicates(patient.getName(), patient.getBirthday());
+            decision = found.isEmpty() ? admission.decide(patient, patient.getType(), intent)
+                : AdmissionDecision.duplicate(patient.getType(), found);
+            if (decision.isQueuedHere()) {
+                if (decision.getLane() != patient.getType()) {
+                    patient.changeType(decision.getLane());
+                }
+                // Filed before the lane change: events may be delivered by another thread after
+                // this returns, and the next desk's check must already see the patient
+                duplicates.track(patient);
+                if (!queuePatient(patient)) {
+                    decision = AdmissionDecision.rejected(patient.getType(), "patient is already waiting");
+                }
+            } else if (decision.getOutcome() == AdmissionDecision.Outcome.WAITLISTED) {
+                admission.getWaitlist().add(patient);
+                duplicates.track(patient);
+                // A call that saw an empty waitlist may have freed a place since the check
+                admission.promoteWaitlisted();
+            }
+        }
+        if (decision.getShard() != null) {
+            // Outside our lock: the other department takes its own, and counts the arrival
+            AdmissionDecision received = decision.getShard().admitFromElsewhere(patient, () -> true, true);
+            if (!received.isQueuedHere()) {
+                decision = AdmissionDecision.rejected(patient.getType(), decision.getShardKey() + ": " + received.getReason());
+            }
+        }
+        admission.record(decision);
+        return decision;
+    }
+
+    // Admits a patient who is waiting elsewhere. `release` takes them out of their old place
+    // and returns false if they are gone; it runs under the admission lock, so the place
+    // that was checked is still free when the patient arrives.
+    public AdmissionDecision admitTransfer(Patient patient, BooleanSupplier release) {
+        return admitFromElsewhere(patient, release, false);
+    }
+
+    private AdmissionDecision admitFromElsewhere(Patient patient, BooleanSupplier release, boolean newArrival) {
+        AdmissionDecision decision;
+        synchronized (admission) {
+            decision = admission.decide(patient, patient.getType(), AdmissionController.Intent.TRANSFER);
+            if (decision.isQueuedHere()) {
+                if (!release.getAsBoolean()) {
+                    decision = AdmissionDecision.rejected(patient.getType(), "patient was called meanwhile");
+                } else if (!enqueue(patient, newArrival)) {
+                    decision = AdmissionDecision.rejected(patient.getType(), "patient is already waiting");
+                }
+            }
+        }
+        admission.record(decision);
+        return decision;
+    }
+
+    // The senior lane is for patients 75 and over, whichever desk or script asks. Rejections
+    // for it are input errors, not capacity outcomes, so they are not recorded.
+    private static final String SENIOR_AGE_RULE = "patient must be 75+ for Senior type";
+
+    private static boolean fitsLane(Patient patient, PatientType type) {
+        return type != PatientType.SENIOR || patient.isSeniorByAge();
+    }
+
+    // Moves a waiting patient to another lane if that lane has room under the admission policy
+    public AdmissionDecision admitTypeChange(Patient patient, PatientType newType) {
+        if (!fitsLane(patient, newType)) {
+            return AdmissionDecision.rejected(newType, SENIOR_AGE_RULE);
+        }
+        if (patient.getType() == newType) {
+            changePatientType(patient, newType);
+            return AdmissionDecision.admitted(newType);
+        }
+        AdmissionDecision decision;
+        synchronized (admission) {
+            decision = admission.decide(patient, newType, AdmissionController.Intent.TYPE_CHANGE);
+            if (decision.isQueuedHere() && !changePatientType(patient, decision.getLane())) {
+                decision = AdmissionDecision.rejected(newType, "patient was called meanwhile");
+            }
+        }
+        admission.record(decision);
+        return decision;
+    }
+
+    public void addNote(Patient patient, String note) {
+        if (note == null || note.trim().isEmpty()) return;
+        patient.addNote(note);
+        publish(QueueEvent.Kind.NOTE_ADDED, patient, null, note.trim());
+        deliverEvents();
+    }
+
+    // The admission controller stays last, so a waitlist promotion is reported after the
+    // call or removal that made room for it
+    public synchronized void addQueueListener(QueueListener listener) { listeners.add(listeners.size() - 1, listener); }
+    public void removeQueueListener(QueueListener listener) { listeners.remove(listener); }
+
     public List<Patient> searchPatientsByName(String searchName) {
+        long start = OperationMetrics.start();
         String searchLower = searchName.toLowerCase().trim();
-        return patientQueue.stream()
+        List<Patient> found = allPatients()
             .filter(p -> p.getName().toLowerCase().contains(searchLower))
             .collect(Collectors.toList());
+        metrics.record(OperationMetrics.Operation.SEARCH, start, found.size());
+        return found;
     }
 
-    public void printSearchResults(String searchName) {
-        List<Patient> foundPatients = searchPatientsByName(searchName);
-        
-        System.out.println("\n" + Colors.CYAN + Colors.BOLD + 
-                          "=== SEARCH RESULTS FOR: \"" + searchName + "\" ===" + Colors.RESET);
+    // One page of name matches in priority order; see findPatients
+    public PatientPage searchPatientsByName(String searchName, String token, int limit) {
+        long start = OperationMetrics.start();
+        String searchLower = searchName.toLowerCase().trim();
+        PatientPage page = findPatients(p -> p.getName().toLowerCase().contains(searchLower), token, limit);
+        metrics.record(OperationMetrics.Operation.SEARCH, start, page.getPatients().size());
+        return page;
+    }
+
+    public PatientPage getPatientsInAgeRange(int minAge, int maxAge, String token, int limit) {
+        return findPatients(p -> p.getAge() >= minAge && p.getAge() <= maxAge, token, limit);
+    }
+
+    // One page of waiting patients matching the filter, lane by lane in priority order and by
+    // arrival within a lane. Pass null for the first page and the previous page's token after
+    // that. Only the patients up to the next match after the page are visited.
+    public PatientPage findPatients(Predicate<Patient> filter, String token, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Page size must be positive.");
+        PatientPage.Position after = token == null ? null : PatientPage.Position.parse(token);
+        List<Patient> page = new ArrayList<>(Math.min(limit, 64));
+        boolean started = after == null;
+        for (PatientType type : PRIORITY_ORDER) {
+            if (!started && type != after.type) continue;
+            LaneSnapshot lane = lanes.get(type).snapshot();
+            Iterator<Patient> patients = started ? lane.iterator() : lane.iteratorAfter(after.arrival, after.sequence);
+            started = true;
+            while (patients.hasNext()) {
+                Patient patient = patients.next();
+                if (!filter.test(patient)) continue;
+                if (page.size() == limit) {
+                    return new PatientPage(page, PatientPage.tokenAfter(page.get(limit - 1)));
+                }
+                page.add(patient);
+            }
+        }
+        return new PatientPage(page, null);
+    }
+
+    // Waiting patients from position `offset` in priority order; lanes are skipped by their
+    // size and the first lane entered is seeked by rank, so deep pages cost O(log n) to reach
+    public PatientPage getPatientsPage(int offset, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Page size must be positive.");
+        if (offset < 0) throw new IllegalArgumentException("Offset must not be negative.");
+        List<Patient> page = new ArrayList<>(Math.min(limit, 64));
+        int skip = offset;
+        for (PatientType type : PRIORITY_ORDER) {
+            LaneSnapshot lane = lanes.get(type).snapshot();
+            if (skip >= lane.size()) {
+                skip -= lane.size();
+                continue;
+            }
+            Iterator<Patient> patients = lane.iteratorFrom(skip);
+            skip = 0;
+            while (patients.hasNext()) {
+                Patient patient = patients.next();
+                if (page.size() == limit) {
+                    return new PatientPage(page, PatientPage.tokenAfter(page.get(limit - 1)));
+                }
+                page.add(patient);
+            }
+        }
+        return new PatientPage(page, null);
+    }
+
+    public int countPatients(Predicate<Patient> filter) {
+        return (int) allPatients().filter(filter).count();
+    }
+
+    // Prints one page of matches numbered from firstNumber, with the header on the first page
+    public PatientPage printSearchResults(String searchName, String token, int limit, int firstNumber) {
+        PatientPage page = searchPatientsByName(searchName, token, limit);
+        List<Patient> foundPatients = page.getPatients();
         
+        if (token == null) {
+            System.out.println("\n" + Colors.CYAN + Colors.BOLD + 
+                              "=== SEARCH RESULTS FOR: \"" + searchName + "\" ===" + Colors.RESET);
+        }
         if (foundPatients.isEmpty()) {
-            System.out.println(Colors.YELLOW + "No patients found matching \"" + searchName + "\"." + Colors.RESET);
-            return;
+            System.out.println(Colors.YELLOW + "No " + (token == null ? "" : "more ") + 
+                              "patients found matching \"" + searchName + "\"." + Colors.RESET);
+            return page;
         }
         
-        System.out.println(Colors.GREEN + "Found " + foundPatients.size() + " patient(s):" + Colors.RESET);
+        System.out.println(Colors.GREEN + "Showing patient(s) " + firstNumber + "-" + 
+                          (firstNumber + foundPatients.size() - 1) + ":" + Colors.RESET);
         
+        QueueSnapshot snapshot = snapshot();
+        Comparator<Patient> order = currentServiceOrder();
         for (int i = 0; i < foundPatients.size(); i++) {
             Patient patient = foundPatients.get(i);
             PatientType type = patient.getType();
+            QueuePosition position = positionInLine(snapshot, order, patient);
             
-            System.out.println(type.getColor() + "\n" + (i + 1) + ". " + 
+            System.out.println(type.getColor() + "\n" + (firstNumber + i) + ". " + 
                               patient.getTypeIcon() + " " + patient.getName() + Colors.RESET);
             System.out.println(Colors.WHITE + "   Age: " + patient.getAge() + 
                               " | Birthday: " + patient.getBirthday() + Colors.RESET);
             System.out.println(Colors.WHITE + "   Queue: " + type.getQueueName() + Colors.RESET);
             System.out.println(Colors.WHITE + "   Priority Level: " + patient.getPriorityLevel() + Colors.RESET);
+            // Null if the patient was called since the page was read
+            System.out.println(Colors.CYAN + "   Place in Line: " + 
+                              (position == null ? "no longer waiting" : position.describe()) + Colors.RESET);
             
             if (patient.hasNotes()) {
                 System.out.println(Colors.YELLOW + "   Latest Note: " + patient.getLatestNote() + Colors.RESET);
@@ -67,15 +370,17 @@ public class PatientManagement {
                 System.out.println(Colors.YELLOW + "   No notes recorded." + Colors.RESET);
             }
         }
+        return page;
     }
 
     public Patient findPatientByExactName(String patientName) {
-        return patientQueue.stream()
+        return allPatients()
             .filter(p -> p.getName().equalsIgnoreCase(patientName))
             .findFirst()
             .orElse(null);
     }
 
+    // Goes through admission like every other desk-initiated move
     public boolean changePatientType(String patientName, String newType) {
         Patient patient = findPatientByExactName(patientName);
         if (patient == null) return false;
@@ -87,31 +392,115 @@ public class PatientManagement {
             return false;
         }
         
+        return admitTypeChange(patient, newPatientType).isQueuedHere();
+    }
+
+    // Applies a type change another process already admitted, e.g. on a standby replica,
+    // without checking capacity or the senior age rule again
+    boolean applyReplicatedTypeChange(Patient patient, PatientType newPatientType) {
+        return changePatientType(patient, newPatientType);
+    }
+
+    private boolean changePatientType(Patient patient, PatientType newPatientType) {
+        String patientName = patient.getName();
         if (patient.getType() == newPatientType) {
-            System.out.println(Colors.YELLOW + "Patient " + patientName + 
-                              " is already of type " + newPatientType.name() + "." + Colors.RESET);
+            if (verbose) {
+                System.out.println(Colors.YELLOW + "Patient " + patientName + 
+                                  " is already of type " + newPatientType.name() + "." + Colors.RESET);
+            }
             return true;
         }
         
+        long start = OperationMetrics.start();
         PatientType oldType = patient.getType();
-        patient.changeType(newPatientType);
         
-        // Re-add to queue to update priority
-        patientQueue.remove(patient);
-        patientQueue.offer(patient);
+        // Move to the new lane; fails if a station called the patient meanwhile. Both lanes
+        // are held, in priority order, so no call from the new lane is published first.
+        PatientLane from = lanes.get(oldType);
+        PatientLane to = lanes.get(newPatientType);
+        boolean fromFirst = oldType.getPriority() < newPatientType.getPriority();
+        synchronized (fromFirst ? from : to) {
+            synchronized (fromFirst ? to : from) {
+                if (!from.remove(patient)) return false;
+                patient.changeType(newPatientType);
+                to.add(patient);
+                publish(QueueEvent.Kind.TYPE_CHANGED, patient, oldType, null);
+            }
+        }
+        deliverEvents();
+        metrics.record(OperationMetrics.Operation.CHANGE_TYPE, start, 1);
         
-        System.out.println(Colors.GREEN + "Patient " + patientName + " moved from " + 
-                          oldType.getQueueName() + " to " + newPatientType.getQueueName() + "." + Colors.RESET);
+        if (verbose) {
+            System.out.println(Colors.GREEN + "Patient " + patientName + " moved from " + 
+                              oldType.getQueueName() + " to " + newPatientType.getQueueName() + "." + Colors.RESET);
+        }
         
         return true;
     }
 
     public boolean removePatient(String patientName) {
-        return patientQueue.removeIf(p -> p.getName().equalsIgnoreCase(patientName));
+        long start = OperationMetrics.start();
+        Predicate<Patient> named = p -> p.getName().equalsIgnoreCase(patientName);
+        int removed = removeMatching(named).size();
+        for (Patient held : admission.getWaitlist().removeIf(named)) {
+            duplicates.untrack(held);
+            removed++;
+        }
+        metrics.record(OperationMetrics.Operation.REMOVE, start, removed);
+        return removed > 0;
+    }
+
+    // Removes this exact patient rather than every namesake; false if already called or removed
+    public boolean removePatient(Patient patient) {
+        long start = OperationMetrics.start();
+        PatientLane lane = lanes.get(patient.getType());
+        synchronized (lane) {
+            if (!lane.remove(patient)) return false;
+            publish(QueueEvent.Kind.REMOVED, patient, null, null);
+        }
+        deliverEvents();
+        metrics.record(OperationMetrics.Operation.REMOVE, start, 1);
+        return true;
+    }
+
+    // Calls this exact patient out of turn, e.g. when replaying a call made elsewhere
+    public boolean callPatient(Patient patient) {
+        PatientLane lane = lanes.get(patient.getType());
+        synchronized (lane) {
+            if (!lane.remove(patient)) return false;
+            publish(QueueEvent.Kind.CALLED, patient, null, null);
+        }
+        recordCall(patient);
+        return true;
+    }
+
+    private List<Patient> removeMatching(Predicate<Patient> filter) {
+        List<Patient> removed = new ArrayList<>();
+        for (PatientType type : PRIORITY_ORDER) {
+            PatientLane lane = lanes.get(type);
+            synchronized (lane) {
+                for (Patient patient : lane.removeIf(filter)) {
+                    publish(QueueEvent.Kind.REMOVED, patient, null, null);
+                    removed.add(patient);
+                }
+            }
+        }
+        deliverEvents();
+        return removed;
+    }
+
+    // All waiting patients, lane by lane in priority order and by arrival within a lane
+    public Stream<Patient> allPatients() {
+        return Arrays.stream(PRIORITY_ORDER).flatMap(type -> lanes.get(type).stream());
+    }
+
+    // O(1) per lane; reports iterate the snapshot while intake and calls carry on
+    public QueueSnapshot snapshot() {
+        return new QueueSnapshot(lanes, PRIORITY_ORDER);
     }
 
     public void printNextPatient() {
-        Patient nextPatient = patientQueue.peek();
+        Patient nextPatient = peekNextPatient();
         if (nextPatient != null) {
             PatientType type = nextPatient.getType();
             System.out.println(type.getColor() + "Next patient: " + 
@@ -123,22 +512,21 @@ public class PatientManagement {
 
     public void printPatients() {
         System.out.println("\n" + Colors.CYAN + Colors.BOLD + "=== PATIENT QUEUES ===" + Colors.RESET);
-
-        Map<PatientType, List<Patient>> patientsByType = patientQueue.stream()
-            .collect(Collectors.groupingBy(Patient::getType));
+        QueueSnapshot snapshot = snapshot();
+        // Numbers are places in line under the current policy, so lanes interleave under aging
+        Comparator<Patient> order = currentServiceOrder();
 
         for (PatientType type : PatientType.values()) {
-            List<Patient> patients = patientsByType.getOrDefault(type, new ArrayList<>());
+            LaneSnapshot patients = snapshot.getLane(type);
             
             System.out.println(type.getColor() + Colors.BOLD + type.getQueueName() + ":" + Colors.RESET);
             
             if (patients.isEmpty()) {
                 System.out.println(Colors.YELLOW + "  No " + type.name().toLowerCase() + " patients." + Colors.RESET);
             } else {
-                for (int i = 0; i < patients.size(); i++) {
-                    Patient patient = patients.get(i);
+                for (Patient patient : patients) {
                     String notesDisplay = patient.hasNotes() ? " - " + patient.getLatestNote() : "";
-                    System.out.println(type.getColor() + "  " + (i + 1) + ". " + 
+                    System.out.println(type.getColor() + "  " + snapshot.positionOf(patient, order) + ". " + 
                                       patient.getName() + " (Age: " + patient.getAge() + ")" + 
                                       notesDisplay + Colors.RESET);
                 }
@@ -156,21 +544,31 @@ public class PatientManagement {
     public void printStatistics() {
         System.out.println("\n" + Colors.CYAN + Colors.BOLD + "=== PATIENT STATISTICS ===" + Colors.RESET);
         
-        Map<PatientType, Long> countsByType = patientQueue.stream()
-            .collect(Collectors.groupingBy(Patient::getType, Collectors.counting()));
+        QueueSnapshot snapshot = snapshot();
+        int totalWaiting = snapshot.getTotalCount();
 
         System.out.println(Colors.WHITE + "Current Patients in Queue:" + Colors.RESET);
         for (PatientType type : PatientType.values()) {
-            long count = countsByType.getOrDefault(type, 0L);
-            System.out.println(type.getColor() + "  " + type.name() + ": " + count + Colors.RESET);
+            System.out.println(type.getColor() + "  " + type.name() + ": " + snapshot.getCount(type) + Colors.RESET);
         }
-        System.out.println(Colors.CYAN + "  Total Waiting: " + getTotalPatientCount() + Colors.RESET);
+        System.out.println(Colors.CYAN + "  Total Waiting: " + totalWaiting + Colors.RESET);
         
         System.out.println(Colors.WHITE + "\nToday's Statistics:" + Colors.RESET);
-        System.out.println(Colors.GREEN + "  Total Patients Today: " + totalPatientsToday + Colors.RESET);
-        System.out.println(Colors.RED + "  Emergencies Today: " + totalEmergenciesToday + Colors.RESET);
+        System.out.println(Colors.GREEN + "  Total Patients Today: " + getTotalPatientsToday() + Colors.RESET);
+        System.out.println(Colors.RED + "  Emergencies Today: " + getTotalEmergenciesToday() + Colors.RESET);
+        System.out.println(Colors.GREEN + "  Patients Called Today: " + getTotalCallsToday() + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Last Hour: " + 
+                          getArrivalsInLastMinutes(60) + " arrivals, " + 
+                          getCallsInLastMinutes(60) + " calls, " + 
+                          getEmergenciesInLastMinutes(60) + " emergencies" + Colors.RESET);
         
-        double averageAge = calculateAverageAge();
+        int busiestHour = trafficCounters.getBusiestHourToday(TrafficCounters.Event.ARRIVAL);
+        if (busiestHour >= 0) {
+            System.out.println(Colors.WHITE + "  Busiest Hour: " + String.format("%02d:00-%02d:59", busiestHour, busiestHour) + 
+                              " (" + trafficCounters.countInHour(TrafficCounters.Event.ARRIVAL, busiestHour) + " arrivals)" + Colors.RESET);
+        }
+        
+        double averageAge = calculateAverageAge(snapshot);
         if (averageAge > 0) {
             System.out.println(Colors.PURPLE + "  Average Age: " + 
                               String.format("%.1f", averageAge) + " years" + Colors.RESET);
@@ -178,87 +576,177 @@ public class PatientManagement {
             System.out.println(Colors.YELLOW + "  Average Age: No patients to calculate" + Colors.RESET);
         }
         
-        if (getTotalPatientCount() > 0) {
+        if (totalWaiting > 0) {
             System.out.println(Colors.WHITE + "\nQueue Composition:" + Colors.RESET);
             for (PatientType type : PatientType.values()) {
-                long count = countsByType.getOrDefault(type, 0L);
-                double percentage = (double) count / getTotalPatientCount() * 100;
+                double percentage = (double) snapshot.getCount(type) / totalWaiting * 100;
                 System.out.println(type.getColor() + "  " + type.name() + ": " + 
                                   String.format("%.1f", percentage) + "%" + Colors.RESET);
             }
         }
     }
 
-    private double calculateAverageAge() {
-        return patientQueue.stream()
+    private double calculateAverageAge(QueueSnapshot snapshot) {
+        return snapshot.patients()
             .mapToInt(Patient::getAge)
             .average()
             .orElse(0.0);
     }
 
+    public Patient peekNextPatient() {
+        PatientLane lane = selectLane(ALL_TYPES);
+        return lane == null ? null : lane.peek();
+    }
+
+    // Compares only the lane heads under the current policy
+    private PatientLane selectLane(Set<PatientType> eligibleTypes) {
+        Comparator<Patient> order = currentServiceOrder();
+        PatientLane bestLane = null;
+        Patient bestHead = null;
+        for (PatientType type : PRIORITY_ORDER) {
+            if (!eligibleTypes.contains(type)) continue;
+            PatientLane lane = lanes.get(type);
+            Patient head = lane.peek();
+            if (head != null && (bestHead == null || order.compare(head, bestHead) < 0)) {
+                bestLane = lane;
+                bestHead = head;
+            }
+        }
+        return bestLane;
+    }
+
+    private Comparator<Patient> currentServiceOrder() {
+        return schedulingPolicy.serviceOrder(LocalDateTime.now(getClock()));
+    }
+
+    // Everyone waiting in the order they would be called if calls started now, without
+    // removing anyone; each step costs O(1) and nothing is copied or sorted
+    public Iterable<Patient> patientsInServiceOrder() {
+        QueueSnapshot snapshot = snapshot();
+        Comparator<Patient> order = currentServiceOrder();
+        return () -> snapshot.inServiceOrder(order);
+    }
+
+    // 1-based place in line under the current policy, or -1 if not waiting; O(log n)
+    public int getQueuePosition(Patient patient) {
+        return snapshot().positionOf(patient, currentServiceOrder());
+    }
+
+    // Place in line plus the expected wait at the recent call rate, or null if not waiting;
+    // O(log n), so it can be shown next to every search result
+    public QueuePosition getPositionInLine(Patient patient) {
+        return positionInLine(snapshot(), currentServiceOrder(), patient);
+    }
+
+    private QueuePosition positionInLine(QueueSnapshot snapshot, Comparator<Patient> order, Patient patient) {
+        int position = snapshot.positionOf(patient, order);
+        if (position < 0) return null;
+        return new QueuePosition(position, forecaster.getExpectedWaitMinutes(position - 1));
+    }
+
     public Patient dequeuePatient() {
-        Patient patient = patientQueue.poll();
+        return dequeuePatient(ALL_TYPES);
+    }
+
+    // Claims the highest-priority patient among the eligible types; safe to call from several stations at once
+    public Patient dequeuePatient(Set<PatientType> eligibleTypes) {
+        long start = OperationMetrics.start();
+        Patient patient = null;
+        PatientLane lane;
+        // A concurrent caller may drain the chosen lane first; choose again if so
+        while (patient == null && (lane = selectLane(eligibleTypes)) != null) {
+            synchronized (lane) {
+                patient = lane.poll();
+                if (patient != null) publish(QueueEvent.Kind.CALLED, patient, null, null);
+            }
+        }
+        
         if (patient != null) {
+            recordCall(patient);
+        } else if (verbose) {
+            System.out.println(Colors.YELLOW + "No eligible patients to call." + Colors.RESET);
+        }
+        metrics.record(OperationMetrics.Operation.DEQUEUE, start, patient == null ? 0 : 1);
+        return patient;
+    }
+
+    private void recordCall(Patient patient) {
+        trafficCounters.record(TrafficCounters.Event.CALL);
+        forecaster.recordCall(patient.getType());
+        if (verbose) {
             System.out.println(Colors.GREEN + "Called " + patient.getType().name().toLowerCase() + 
                               " patient: " + patient.getName() + Colors.RESET);
-        } else {
-            System.out.println(Colors.YELLOW + "No patients to call - all queues are empty." + Colors.RESET);
         }
-        return patient;
+        deliverEvents();
     }
 
     // Method to get count by patient type
     public int getCountByType(PatientType type) {
-        return (int) patientQueue.stream()
-            .filter(p -> p.getType() == type)
-            .count();
+        return lanes.get(type).size();
     }
 
-    // Method to clear queue by type
-    public List<String> clearQueueByType(PatientType type) {
-        List<String> removedPatients = patientQueue.stream()
-            .filter(p -> p.getType() == type)
-            .map(Patient::getName)
-            .collect(Collectors.toList());
-        
-        patientQueue.removeIf(p -> p.getType() == type);
-        return removedPatients;
+    // Bulk clears return the removed patients in priority order; they are no longer in any
+    // lane, so unlike queries these cannot be paged
+    public List<Patient> clearQueueByType(PatientType type) {
+        long start = OperationMetrics.start();
+        List<Patient> removed = removeMatching(p -> p.getType() == type);
+        metrics.record(OperationMetrics.Operation.CLEAR_TYPE, start, removed.size());
+        return removed;
     }
 
-    // Method to clear all queues
-    public List<String> clearAllQueues() {
-        List<String> removedPatients = patientQueue.stream()
-            .map(Patient::getName)
-            .collect(Collectors.toList());
-        
-        patientQueue.clear();
-        return removedPatients;
+    public List<Patient> clearAllQueues() {
+        long start = OperationMetrics.start();
+        List<Patient> removed = removeMatching(p -> true);
+        metrics.record(OperationMetrics.Operation.CLEAR_ALL, start, removed.size());
+        return removed;
     }
 
-    // Method to get patients in age range
-    public List<String> getPatientsInAgeRange(int minAge, int maxAge) {
-        return patientQueue.stream()
-            .filter(p -> p.getAge() >= minAge && p.getAge() <= maxAge)
-            .map(p -> p.getName() + " (Age: " + p.getAge() + ", Type: " + p.getType().name() + ")")
-            .collect(Collectors.toList());
+    public List<Patient> clearByAgeRange(int minAge, int maxAge) {
+        long start = OperationMetrics.start();
+        List<Patient> removed = removeMatching(p -> p.getAge() >= minAge && p.getAge() <= maxAge);
+        metrics.record(OperationMetrics.Operation.CLEAR_AGE_RANGE, start, removed.size());
+        return removed;
     }
 
-    // Method to clear patients by age range
-    public List<String> clearByAgeRange(int minAge, int maxAge) {
-        List<String> removedPatients = patientQueue.stream()
-            .filter(p -> p.getAge() >= minAge && p.getAge() <= maxAge)
-            .map(Patient::getName)
-            .collect(Collectors.toList());
-        
-        patientQueue.removeIf(p -> p.getAge() >= minAge && p.getAge() <= maxAge);
-        return removedPatients;
+    // Getter methods
+    public int getTotalPatientCount() {
+        int total = 0;
+        for (PatientLane lane : lanes.values()) {
+            total += lane.size();
+        }
+        return total;
     }
+    public int getEmergencyCount() { return getCountByType(PatientType.EMERGENCY); }
+    public int getSeniorCount() { return getCountByType(PatientType.SENIOR); }
+    public int getRegularCount() { return getCountByType(PatientType.REGULAR); }
+    public int getTotalPatientsToday() { return (int) trafficCounters.countToday(TrafficCounters.Event.ARRIVAL); }
+    public int getTotalEmergenciesToday() { return (int) trafficCounters.countToday(TrafficCounters.Event.EMERGENCY); }
+    public int getTotalCallsToday() { return (int) trafficCounters.countToday(TrafficCounters.Event.CALL); }
+    public long getArrivalsInLastMinutes(int minutes) { return trafficCounters.countLastMinutes(TrafficCounters.Event.ARRIVAL, minutes); }
+    public long getCallsInLastMinutes(int minutes) { return trafficCounters.countLastMinutes(TrafficCounters.Event.CALL, minutes); }
+    public long getEmergenciesInLastMinutes(int minutes) { return trafficCounters.countLastMinutes(TrafficCounters.Event.EMERGENCY, minutes); }
+    public TrafficCounters getTrafficCounters() { return trafficCounters; }
+    public ArrivalForecaster getForecaster() { return forecaster; }
+    public Clock getClock() { return trafficCounters.getClock(); }
+    public TimestampFormatter getTimestampFormatter() { return timestamps; }
+    public OperationMetrics getMetrics() { return metrics; }
+    public AdmissionController getAdmissionController() { return admission; }
+    public DuplicateDetector getDuplicateDetector() { return duplicates; }
+    public boolean isVerbose() { return verbose; }
+    public SchedulingPolicy getSchedulingPolicy() { return schedulingPolicy; }
+    public void setSchedulingPolicy(SchedulingPolicy schedulingPolicy) { this.schedulingPolicy = schedulingPolicy; }
+    
+    // Turns off per-patient console output for scripted and simulated drivers
+    public void setVerbose(boolean verbose) { this.verbose = verbose; }
 
-    // Getter methods
-    public int getTotalPatientCount() { return patientQueue.size(); }
-    public int getEmergencyCount() { return (int) patientQueue.stream().filter(p -> p.getType() == PatientType.EMERGENCY).count(); }
-    public int getSeniorCount() { return (int) patientQueue.stream().filter(p -> p.getType() == PatientType.SENIOR).count(); }
-    public int getRegularCount() { return (int) patientQueue.stream().filter(p -> p.getType() == PatientType.REGULAR).count(); }
-    public int getTotalPatientsToday() { return totalPatientsToday; }
-    public int getTotalEmergenciesToday() { return totalEmergenciesToday; }
+    // Patients a new arrival of this type would have ahead of them under strict priority
+    public int getPatientsAheadOfType(PatientType type) {
+        int ahead = 0;
+        for (PatientType other : PatientType.values()) {
+            if (other.getPriority() <= type.getPriority()) {
+                ahead += getCountByType(other);
+            }
+        }
+        return ahead;
+    }
 }
\ No newline at end of file
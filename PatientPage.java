@@ -0,0 +1,51 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+
+// One page of waiting patients in priority order. The token names the last patient on the
+// page (lane, arrival time, sequence), so the next page resumes right after that position
+// even if patients were called or added in between.
+public final class PatientPage {
+    private final List<Patient> patients;
+    private final String nextToken;
+
+    PatientPage(List<Patient> patients, String nextToken) {
+        this.patients = Collections.unmodifiableList(patients);
+        this.nextToken = nextToken;
+    }
+
+    public List<Patient> getPatients() { return patients; }
+    public boolean isEmpty() { return patients.isEmpty(); }
+    public boolean hasMore() { return nextToken != null; }
+
+    // Pass to the same query for the next page; null after the last page
+    public String getNextToken() { return nextToken; }
+
+    static String tokenAfter(Patient patient) {
+        return patient.getType().name() + "/" + patient.getArrivalTime() + "/" + patient.getSequence();
+    }
+
+    // Position decoded from a token
+    static final class Position {
+        final PatientType type;
+        final LocalDateTime arrival;
+        final long sequence;
+
+        private Position(PatientType type, LocalDateTime arrival, long sequence) {
+            this.type = type;
+            this.arrival = arrival;
+            this.sequence = sequence;
+        }
+
+        static Position parse(String token) {
+            String[] parts = token.split("/");
+            if (parts.length != 3) throw new IllegalArgumentException("Invalid page token: " + token);
+            try {
+                return new Position(PatientType.valueOf(parts[0]), LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid page token: " + token);
+            }
+        }
+    }
+}
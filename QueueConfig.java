@@ -5,10 +5,20 @@ public class QueueConfig {
     public static final int MAX_REGULAR_CAPACITY = 25;
     public static final int MAX_TOTAL_CAPACITY = 50;
     
+    // Treatment rooms opened at startup
+    public static final int DEFAULT_TREATMENT_ROOMS = 1;
+    
     // Warning thresholds (percentage of capacity)
     public static final double WARNING_THRESHOLD = 0.8; // 80%
     public static final double CRITICAL_THRESHOLD = 0.95; // 95%
     
+    // Forecasting
+    public static final double FORECAST_SMOOTHING = 0.3; // weight of the newest interval
+    public static final int FORECAST_HORIZON_MINUTES = 30;
+    
+    // Aging scheduler: minutes of waiting that raise a patient by one priority level
+    public static final int AGING_MINUTES_PER_LEVEL = 15;
+    
     public static int getMaxCapacityForType(PatientType type) {
         switch (type) {
             case EMERGENCY: return MAX_EMERGENCY_CAPACITY;
@@ -0,0 +1,10 @@
+// Receives queue changes from PatientManagement after they have been applied.
+// Callbacks arrive one at a time in the order the changes were made, on the thread that
+// made the change or on one delivering other changes at the time, and should return quickly.
+public interface QueueListener {
+    default void onPatientQueued(Patient patient) {}
+    default void onPatientCalled(Patient patient) {}
+    default void onPatientRemoved(Patient patient) {}
+    default void onPatientTypeChanged(Patient patient, PatientType oldType) {}
+    default void onNoteAdded(Patient patient, String note) {}
+}
@@ -0,0 +1,43 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight Recorder event for a queue operation slower than THRESHOLD_NANOS, e.g.
+//   java -XX:StartFlightRecording=filename=pms.jfr Main
+//   jfr print --events pms.QueueOperation pms.jfr
+@Name("pms.QueueOperation")
+@Label("Queue Operation")
+@Category({"Patient Management", "Queue"})
+@Description("A PatientManagement operation with its duration and the number of patients it touched")
+@StackTrace(true)
+public class QueueOperationEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(QueueOperationEvent.class);
+
+    // Typical operations take a few microseconds; recording every one would swamp the file
+    static final long THRESHOLD_NANOS = 50_000;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("Patients")
+    int patients;
+
+    // Timed by the caller, so the event is only allocated while a recording wants it
+    static void emit(OperationMetrics.Operation operation, long elapsedNanos, int patients) {
+        if (elapsedNanos < THRESHOLD_NANOS || !TYPE.isEnabled()) return;
+        QueueOperationEvent event = new QueueOperationEvent();
+        event.operation = operation.getLabel();
+        event.elapsed = elapsedNanos;
+        event.patients = patients;
+        event.commit();
+    }
+}
@@ -0,0 +1,24 @@
+// A waiting patient's place in line under the current scheduling policy and how long
+// they can expect to wait at the recent call rate
+public final class QueuePosition {
+    private final int position;
+    private final double estimatedWaitMinutes;
+
+    QueuePosition(int position, double estimatedWaitMinutes) {
+        this.position = position;
+        this.estimatedWaitMinutes = estimatedWaitMinutes;
+    }
+
+    // 1 for the patient who will be called next
+    public int getPosition() { return position; }
+    public int getPatientsAhead() { return position - 1; }
+
+    // Infinite until enough patients have been called to measure a rate
+    public double getEstimatedWaitMinutes() { return estimatedWaitMinutes; }
+
+    public String describe() {
+        if (position == 1) return "#1 in line (next to be called)";
+        return "#" + position + " in line (" + getPatientsAhead() + " ahead, est. wait " + 
+               ArrivalForecaster.formatMinutes(estimatedWaitMinutes) + ")";
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class QueueSimulator {
+    private final SimulationConfig config;
+    private final SplittableRandom random;
+    // Not the machine's zone, so daylight saving cannot shift a run
+    private final ZoneId zone = ZoneOffset.UTC;
+
+    public QueueSimulator(SimulationConfig config) {
+        this.config = config;
+        this.random = new SplittableRandom(config.getSeed());
+    }
+
+    public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--help")) {
+            System.out.println(SimulationConfig.usage());
+            return;
+        }
+        try {
+            SimulationConfig config = SimulationConfig.fromArgs(args);
+            System.out.println(Colors.CYAN + "Running queue simulation (" + config.getSchedulingPolicy().getName() + ")..." + Colors.RESET);
+            new QueueSimulator(config).run().print();
+        } catch (IllegalArgumentException e) {
+            System.out.println(Colors.RED + "Error: " + e.getMessage() + Colors.RESET);
+            System.out.println(SimulationConfig.usage());
+        } catch (IOException e) {
+            System.out.println(Colors.RED + "Error reading trace: " + e.getMessage() + Colors.RESET);
+        }
+    }
+
+    // Drives a real PatientManagement on simulated time until every arrival has been served
+    public SimulationReport run() throws IOException {
+        long startMillis = config.getStartTime().atZone(zone).toInstant().toEpochMilli();
+        SimulationClock clock = new SimulationClock(Instant.ofEpochMilli(startMillis), zone);
+        PatientManagement queue = new PatientManagement(clock);
+        queue.setVerbose(false);
+        queue.setSchedulingPolicy(config.getSchedulingPolicy());
+        queue.getAdmissionController().setPolicy(config.getAdmissionPolicy());
+
+        SimulationReport report = new SimulationReport(config.getDoctors());
+        DoctorSchedule busyDoctors = new DoctorSchedule(config.getDoctors());
+        // Doctors are treatment stations: the dispatcher gives each arrival to an idle
+        // doctor and each doctor who finishes the next patient, through the real ordering rules
+        StationDispatcher dispatcher = new StationDispatcher(queue);
+        ArrayDeque<TreatmentStation> assigned = new ArrayDeque<>();
+        dispatcher.setOnAssigned((station, patient) -> assigned.add(station));
+        for (int i = 1; i <= config.getDoctors(); i++) {
+            dispatcher.addStation(TreatmentStation.general("Doctor " + i));
+        }
+        long wallStart = System.nanoTime();
+
+        try (ArrivalSource arrivals = openArrivals(startMillis)) {
+            Arrival next = new Arrival();
+            boolean hasNext = arrivals.next(next);
+
+            while (hasNext || !busyDoctors.isEmpty()) {
+                long nextFree = busyDoctors.isEmpty() ? Long.MAX_VALUE : busyDoctors.peekFreeAt();
+
+                if (hasNext && next.atMillis <= nextFree) {
+                    clock.setMillis(next.atMillis);
+                    admit(queue, next, clock, report);
+                    hasNext = arrivals.next(next);
+                } else {
+                    clock.setMillis(nextFree);
+                    dispatcher.completeTreatment(busyDoctors.poll());
+                }
+
+                // Service times are drawn after the next arrival, keeping the random stream
+                // in the order it has always been consumed
+                for (TreatmentStation station; (station = assigned.poll()) != null; ) {
+                    Patient patient = station.getCurrentTreatment().getPatient();
+                    long now = clock.millis();
+                    long waitMillis = now - patient.getArrivalTime().atZone(zone).toInstant().toEpochMilli();
+                    long serviceMillis = sampleServiceMillis(patient.getType());
+                    report.recordServed(patient.getType(), waitMillis, serviceMillis);
+                    busyDoctors.add(now + serviceMillis, station);
+                }
+            }
+        }
+
+        report.finish(clock.millis() - startMillis, System.nanoTime() - wallStart);
+        return report;
+    }
+
+    // Same admission path as Controller.addPatient
+    private void admit(PatientManagement queue, Arrival arrival, SimulationClock clock, SimulationReport report) {
+        report.recordArrival();
+        LocalDate birthday = LocalDate.now(clock).minusYears(arrival.age);
+        Patient patient = new Patient("SIM-" + arrival.id, arrival.age, birthday, arrival.type, null, clock);
+
+        if (!config.isEnforceCapacity()) {
+            queue.queuePatient(patient);
+        } else {
+            // Synthetic arrivals are distinct people, however alike their names and birthdays
+            AdmissionDecision decision = queue.admitPatient(patient, AdmissionController.Intent.ARRIVAL, true);
+            if (decision.getOutcome() != AdmissionDecision.Outcome.ADMITTED) {
+                report.recordBreach(arrival.type);
+            }
+            if (decision.getOutcome() == AdmissionDecision.Outcome.DIVERTED) {
+                report.recordDiverted(decision.getLane());
+            } else if (decision.getOutcome() == AdmissionDecision.Outcome.REJECTED) {
+                report.recordRejected();
+                return;
+            } else if (decision.getOutcome() == AdmissionDecision.Outcome.WAITLISTED) {
+                // Joins a lane, and is served, once a doctor's call frees a place
+                report.recordWaitlisted();
+                return;
+            }
+        }
+        report.recordAdmitted(queue.getTotalPatientCount());
+    }
+
+    private long sampleServiceMillis(PatientType type) {
+        return Math.max(1_000L, (long) exponential(config.getServiceMinutes(type) * 60_000.0));
+    }
+
+    private double exponential(double mean) {
+        return -Math.log(1.0 - random.nextDouble()) * mean;
+    }
+
+    private ArrivalSource openArrivals(long startMillis) throws IOException {
+        if (config.getTracePath() != null) {
+            return new TraceArrivals(config.getTracePath(), startMillis);
+        }
+        return new PoissonArrivals(startMillis);
+    }
+
+    private static class Arrival {
+        long id;
+        long atMillis;
+        int age;
+        PatientType type;
+    }
+
+    private interface ArrivalSource extends Closeable {
+        // Fills `arrival` with the next arrival; false once the source is exhausted
+        boolean next(Arrival arrival) throws IOException;
+    }
+
+    private class PoissonArrivals implements ArrivalSource {
+        private final double meanGapMillis = 3_600_000.0 / config.getArrivalsPerHour();
+        private double timeMillis;
+        private long generated;
+
+        PoissonArrivals(long startMillis) {
+            this.timeMillis = startMillis;
+        }
+
+        @Override
+        public boolean next(Arrival arrival) {
+            if (generated >= config.getPatientCount()) return false;
+
+            timeMillis += exponential(meanGapMillis);
+            arrival.id = ++generated;
+            arrival.atMillis = (long) timeMillis;
+            arrival.age = sampleAge();
+            boolean emergency = random.nextDouble() < config.getEmergencyShare();
+            arrival.type = typeFor(arrival.age, emergency);
+            return true;
+        }
+
+        private int sampleAge() {
+            double age = config.getAgeMean() + random.nextGaussian() * config.getAgeStdDev();
+            return (int) Math.max(0, Math.min(110, Math.round(age)));
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    // CSV lines of offsetSeconds,type,age; blank type derives it from age; '#' starts a comment
+    private class TraceArrivals implements ArrivalSource {
+        private final BufferedReader reader;
+        private final long startMillis;
+        private long lastMillis;
+        private long lineNumber;
+        private long generated;
+
+        TraceArrivals(String path, long startMillis) throws IOException {
+            this.reader = new BufferedReader(new FileReader(path));
+            this.startMillis = startMillis;
+            this.lastMillis = startMillis;
+        }
+
+        @Override
+        public boolean next(Arrival arrival) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] fields = Arrays.copyOf(line.split(","), 3);
+                try {
+                    long atMillis = startMillis + (long) (Double.parseDouble(fields[0].trim()) * 1000);
+                    int age = Integer.parseInt(fields[2].trim());
+                    String typeName = fields[1] == null ? "" : fields[1].trim();
+
+                    arrival.id = ++generated;
+                    // Out-of-order lines are clamped so simulated time never runs backwards
+                    arrival.atMillis = Math.max(atMillis, lastMillis);
+                    arrival.age = age;
+                    arrival.type = typeName.isEmpty() ? typeFor(age, false) : PatientType.valueOf(typeName.toUpperCase());
+                    lastMillis = arrival.atMillis;
+                    return true;
+                } catch (RuntimeException e) {
+                    throw new IOException("Invalid trace line " + lineNumber + ": " + line);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static PatientType typeFor(int age, boolean emergency) {
+        if (emergency) return PatientType.EMERGENCY;
+        return age >= 75 ? PatientType.SENIOR : PatientType.REGULAR;
+    }
+
+    // Min-heap of busy doctors by the time they become free
+    private static class DoctorSchedule {
+        private final long[] freeAt;
+        private final TreatmentStation[] doctors;
+        private int size;
+
+        DoctorSchedule(int doctors) {
+            this.freeAt = new long[doctors];
+            this.doctors = new TreatmentStation[doctors];
+        }
+
+        boolean isEmpty() { return size == 0; }
+        long peekFreeAt() { return freeAt[0]; }
+
+        void add(long time, TreatmentStation doctor) {
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (freeAt[parent] <= time) break;
+                freeAt[index] = freeAt[parent];
+                doctors[index] = doctors[parent];
+                index = parent;
+            }
+            freeAt[index] = time;
+            doctors[index] = doctor;
+        }
+
+        // Removes and returns the doctor who is free first
+        TreatmentStation poll() {
+            TreatmentStation first = doctors[0];
+            long last = freeAt[--size];
+            TreatmentStation lastDoctor = doctors[size];
+            doctors[size] = null;
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) break;
+                if (child + 1 < size && freeAt[child + 1] < freeAt[child]) child++;
+                if (freeAt[child] >= last) break;
+                freeAt[index] = freeAt[child];
+                doctors[index] = doctors[child];
+                index = child;
+            }
+            if (size > 0) {
+                freeAt[index] = last;
+                doctors[index] = lastDoctor;
+            }
+            return first;
+        }
+    }
+}
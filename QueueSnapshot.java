@@ -0,0 +1,103 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+// Snapshots of every lane, taken one after another without blocking writers. Each lane is
+// internally consistent; a patient changing type while the snapshot is taken may appear
+// in its old lane, its new lane, or neither.
+public class QueueSnapshot {
+    private final Map<PatientType, LaneSnapshot> lanes = new EnumMap<>(PatientType.class);
+    private final PatientType[] priorityOrder;
+
+    QueueSnapshot(Map<PatientType, PatientLane> liveLanes, PatientType[] priorityOrder) {
+        for (Map.Entry<PatientType, PatientLane> entry : liveLanes.entrySet()) {
+            lanes.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        this.priorityOrder = priorityOrder;
+    }
+
+    public LaneSnapshot getLane(PatientType type) { return lanes.get(type); }
+    public int getCount(PatientType type) { return lanes.get(type).size(); }
+
+    public int getTotalCount() {
+        int total = 0;
+        for (LaneSnapshot lane : lanes.values()) {
+            total += lane.size();
+        }
+        return total;
+    }
+
+    // Lane by lane in priority order and by arrival within a lane
+    public Stream<Patient> patients() {
+        return Arrays.stream(priorityOrder).flatMap(type -> lanes.get(type).stream());
+    }
+
+    // Patients in the order they would be called under `order`, without draining anything:
+    // a merge of the lanes that compares only their current heads, so each step costs
+    // O(number of lanes), i.e. O(1)
+    public Iterator<Patient> inServiceOrder(Comparator<Patient> order) {
+        return new ServiceOrder(order);
+    }
+
+    // 1-based place in line under `order`, or -1 if the patient is not waiting in this
+    // snapshot; one O(log n) descent per lane
+    public int positionOf(Patient patient, Comparator<Patient> order) {
+        LaneSnapshot own = lanes.get(patient.getType());
+        if (own == null || !own.contains(patient)) return -1;
+        int ahead = 0;
+        for (LaneSnapshot lane : lanes.values()) {
+            ahead += lane.countAhead(patient, order);
+        }
+        return ahead + 1;
+    }
+
+    private final class ServiceOrder implements Iterator<Patient> {
+        private final Comparator<Patient> order;
+        private final Iterator<Patient>[] lanesLeft;
+        private final Patient[] heads;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ServiceOrder(Comparator<Patient> order) {
+            this.order = order;
+            this.lanesLeft = new Iterator[priorityOrder.length];
+            this.heads = new Patient[priorityOrder.length];
+            for (int i = 0; i < priorityOrder.length; i++) {
+                lanesLeft[i] = lanes.get(priorityOrder[i]).iterator();
+                heads[i] = lanesLeft[i].hasNext() ? lanesLeft[i].next() : null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (Patient head : heads) {
+                if (head != null) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Patient next() {
+            int best = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] != null && (best < 0 || order.compare(heads[i], heads[best]) < 0)) best = i;
+            }
+            if (best < 0) throw new NoSuchElementException();
+            Patient patient = heads[best];
+            heads[best] = lanesLeft[best].hasNext() ? lanesLeft[best].next() : null;
+            return patient;
+        }
+    }
+
+    // Grows with every change to any lane, so equal versions mean identical contents
+    public long getVersion() {
+        long version = 0;
+        for (LaneSnapshot lane : lanes.values()) {
+            version += lane.getVersion();
+        }
+        return version;
+    }
+}
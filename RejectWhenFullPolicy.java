@@ -0,0 +1,11 @@
+// Turns away anyone whose lane is full
+public class RejectWhenFullPolicy implements AdmissionPolicy {
+    @Override
+    public String getName() { return "Reject when full"; }
+
+    @Override
+    public AdmissionDecision onFull(Patient patient, PatientType requested, AdmissionController.Intent intent,
+                                    AdmissionController admission) {
+        return AdmissionDecision.rejected(requested, admission.fullReason(requested, intent));
+    }
+}
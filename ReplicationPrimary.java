@@ -0,0 +1,265 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ships every queue change to a warm standby. Changes are encoded on the calling thread
+// and sent in batches by a background thread, so queue operations never wait on the socket.
+public class ReplicationPrimary implements QueueListener, Closeable {
+    private static final int LATENCY_RING = 4096;
+    // Leaves room for the frame header, so every record fits in a frame the standby accepts
+    private static final int MAX_RECORD_BYTES = ReplicationProtocol.MAX_FRAME_BYTES - 8;
+
+    private final PatientManagement patientManagement;
+    private final SocketAddress standbyAddress;
+    private final ZoneId zone;
+    private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>(ReplicationProtocol.PENDING_RECORD_LIMIT);
+    private final AtomicLong lastLogSequence = new AtomicLong();
+    private final AtomicLong ackedLogSequence = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private final long[] recordTimestamps = new long[LATENCY_RING];
+    private final Thread sender;
+
+    private volatile boolean running = true;
+    private volatile boolean connected = false;
+    private volatile boolean resyncNeeded = false;
+    private volatile long lastAckLatencyMillis = 0;
+    private volatile SocketChannel channel;
+
+    public ReplicationPrimary(PatientManagement patientManagement, String standbyAddress) {
+        this.patientManagement = patientManagement;
+        this.standbyAddress = ReplicationProtocol.parseAddress(standbyAddress);
+        this.zone = patientManagement.getClock().getZone();
+        patientManagement.addQueueListener(this);
+
+        sender = new Thread(this::sendLoop, "replication-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    // Queue listener callbacks
+
+    @Override
+    public void onPatientQueued(Patient patient) {
+        append(ReplicationProtocol.OP_ENQUEUE, out -> writePatient(out, patient));
+    }
+
+    @Override
+    public void onPatientCalled(Patient patient) {
+        append(ReplicationProtocol.OP_CALL, out -> out.writeLong(patient.getSequence()));
+    }
+
+    @Override
+    public void onPatientRemoved(Patient patient) {
+        append(ReplicationProtocol.OP_REMOVE, out -> out.writeLong(patient.getSequence()));
+    }
+
+    @Override
+    public void onPatientTypeChanged(Patient patient, PatientType oldType) {
+        append(ReplicationProtocol.OP_CHANGE_TYPE, out -> {
+            out.writeLong(patient.getSequence());
+            out.writeByte(patient.getType().ordinal());
+        });
+    }
+
+    @Override
+    public void onNoteAdded(Patient patient, String note) {
+        append(ReplicationProtocol.OP_NOTE, out -> {
+            out.writeLong(patient.getSequence());
+            ReplicationProtocol.writeString(out, note);
+        });
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Synchronized with the snapshot in connect() so no change falls between snapshot and stream.
+    // Runs inside queue operations that have already happened, so it never throws: a record
+    // that cannot be encoded is counted and the standby is brought back with a full snapshot.
+    private synchronized void append(byte op, Body body) {
+        if (!connected) return; // the snapshot sent on the next connect covers it
+
+        long now = patientManagement.getClock().millis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            out.writeLong(lastLogSequence.get() + 1);
+            out.writeLong(now);
+            body.write(out);
+        } catch (IOException | RuntimeException e) {
+            failedRecords.incrementAndGet();
+            resyncNeeded = true;
+            return;
+        }
+        if (bytes.size() > MAX_RECORD_BYTES) {
+            failedRecords.incrementAndGet();
+            resyncNeeded = true;
+            return;
+        }
+
+        long logSequence = lastLogSequence.incrementAndGet();
+        recordTimestamps[(int) (logSequence % LATENCY_RING)] = now;
+        if (!pending.offer(bytes.toByteArray())) {
+            // The standby cannot keep up; drop the stream and resend a full snapshot
+            droppedRecords.incrementAndGet();
+            resyncNeeded = true;
+        }
+    }
+
+    private void writePatient(DataOutputStream out, Patient patient) throws IOException {
+        out.writeLong(patient.getSequence());
+        ReplicationProtocol.writeString(out, patient.getName());
+        out.writeByte(patient.getAge());
+        out.writeLong(patient.getBirthday().toEpochDay());
+        out.writeByte(patient.getType().ordinal());
+        out.writeLong(patient.getArrivalTime().atZone(zone).toInstant().toEpochMilli());
+        ReplicationProtocol.writeString(out, patient.getNotes());
+    }
+
+    private void sendLoop() {
+        while (running) {
+            try {
+                SocketChannel current = ReplicationProtocol.connect(standbyAddress);
+                channel = current;
+                startAckReader(current);
+                sendSnapshot();
+                streamChanges(current);
+            } catch (IOException | RuntimeException e) {
+                // Standby not reachable yet or connection lost; retry below. Anything
+                // unexpected also only costs a reconnect, never the sender thread.
+            }
+            disconnect();
+            sleepQuietly(1000);
+        }
+    }
+
+    private synchronized void sendSnapshot() {
+        pending.clear();
+        resyncNeeded = false;
+        connected = true;
+        append(ReplicationProtocol.OP_RESET, out -> {});
+        patientManagement.allPatients().forEach(this::onPatientQueued);
+    }
+
+    // Writes straight to the channel: channel streams share one lock between reads and writes,
+    // which would stall the sender behind the ack reader
+    private void streamChanges(SocketChannel current) throws IOException {
+        List<byte[]> batch = new ArrayList<>(ReplicationProtocol.MAX_BATCH_RECORDS);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(frame);
+
+        while (running && !resyncNeeded) {
+            byte[] first;
+            try {
+                first = pending.poll(250, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) continue;
+
+            // Fill the frame up to the record and byte limits; this is the only consumer,
+            // so the record seen by peek is the one poll takes
+            batch.clear();
+            batch.add(first);
+            int length = 4 + first.length;
+            byte[] next;
+            while (batch.size() < ReplicationProtocol.MAX_BATCH_RECORDS && (next = pending.peek()) != null &&
+                   length + next.length <= ReplicationProtocol.MAX_FRAME_BYTES) {
+                batch.add(pending.poll());
+                length += next.length;
+            }
+
+            frame.reset();
+            out.writeInt(length);
+            out.writeInt(batch.size());
+            for (byte[] record : batch) {
+                out.write(record);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(frame.toByteArray());
+            while (buffer.hasRemaining()) {
+                current.write(buffer);
+            }
+        }
+    }
+
+    private void startAckReader(SocketChannel current) {
+        Thread reader = new Thread(() -> {
+            ByteBuffer ack = ByteBuffer.allocate(Long.BYTES);
+            try {
+                while (running) {
+                    ack.clear();
+                    while (ack.hasRemaining()) {
+                        if (current.read(ack) < 0) return;
+                    }
+                    long applied = ack.getLong(0);
+                    ackedLogSequence.set(applied);
+                    long sentAt = recordTimestamps[(int) (applied % LATENCY_RING)];
+                    lastAckLatencyMillis = Math.max(0, patientManagement.getClock().millis() - sentAt);
+                }
+            } catch (IOException e) {
+                // Connection closed; the sender notices on its next write
+            }
+        }, "replication-acks");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private synchronized void disconnect() {
+        connected = false;
+        SocketChannel current = channel;
+        channel = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Gives the standby a moment to acknowledge everything before shutting down
+    @Override
+    public void close() {
+        // Bounded by a number of polls (about two seconds) rather than a wall-clock deadline
+        for (int polls = 0; polls < 100 && connected && getLagRecords() > 0; polls++) {
+            sleepQuietly(20);
+        }
+        running = false;
+        patientManagement.removeQueueListener(this);
+        sender.interrupt();
+        disconnect();
+    }
+
+    // Metrics
+    public boolean isConnected() { return connected; }
+    public long getLastLogSequence() { return lastLogSequence.get(); }
+    public long getAckedLogSequence() { return ackedLogSequence.get(); }
+    public long getLagRecords() { return connected ? Math.max(0, lastLogSequence.get() - ackedLogSequence.get()) : -1; }
+    public long getLastAckLatencyMillis() { return lastAckLatencyMillis; }
+    public long getDroppedRecords() { return droppedRecords.get(); }
+    // Changes that could not be encoded; each one forced a resync
+    public long getFailedRecords() { return failedRecords.get(); }
+    public String getStandbyAddress() { return standbyAddress.toString(); }
+}
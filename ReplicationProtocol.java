@@ -0,0 +1,96 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+// Wire format shared by ReplicationPrimary and ReplicationStandby.
+// Frame:  int byteLength, int recordCount, records...
+// Record: byte op, long logSequence, long timestampMillis, op-specific body
+// Strings: int byteLength, UTF-8 bytes (writeUTF stops at 64 KB, notes can be longer)
+// The standby answers every frame with the long log sequence it has applied.
+public class ReplicationProtocol {
+    public static final byte OP_RESET = 0;       // no body; standby discards its state
+    public static final byte OP_ENQUEUE = 1;     // sequence, name, age, birthday epoch day, type, arrival millis, notes
+    public static final byte OP_CALL = 2;        // sequence
+    public static final byte OP_REMOVE = 3;      // sequence
+    public static final byte OP_CHANGE_TYPE = 4; // sequence, type
+    public static final byte OP_NOTE = 5;        // sequence, note
+
+    public static final int MAX_BATCH_RECORDS = 512;
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    public static final int PENDING_RECORD_LIMIT = 100_000;
+
+    private ReplicationProtocol() {}
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Corrupt replication string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // "unix:/path/to/socket", "host:port" or just "port" for loopback
+    public static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    public static SocketChannel connect(SocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(familyOf(address));
+        channel.connect(address);
+        if (address instanceof InetSocketAddress) {
+            channel.socket().setTcpNoDelay(true);
+        }
+        return channel;
+    }
+
+    public static ServerSocketChannel listen(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            // A socket file left behind by an earlier run would block the bind
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+        ServerSocketChannel server = ServerSocketChannel.open(familyOf(address));
+        server.bind(address);
+        return server;
+    }
+
+    public static void cleanup(SocketAddress address) {
+        if (address instanceof UnixDomainSocketAddress) {
+            try {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            } catch (IOException ignored) {
+                // Nothing useful to do on shutdown
+            }
+        }
+    }
+
+    private static StandardProtocolFamily familyOf(SocketAddress address) {
+        if (address instanceof UnixDomainSocketAddress) return StandardProtocolFamily.UNIX;
+        InetSocketAddress inet = (InetSocketAddress) address;
+        return inet.getAddress() instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+// Applies the primary's change stream to a local PatientManagement so it can take over
+public class ReplicationStandby implements Closeable {
+    private final PatientManagement patientManagement;
+    private final SocketAddress listenAddress;
+    private final ZoneId zone;
+    private final Map<Long, Patient> patientsBySequence = new HashMap<>();
+    private ServerSocketChannel server;
+
+    private volatile long appliedLogSequence = 0;
+    private volatile long lastRecordTimestamp = 0;
+    private volatile long framesApplied = 0;
+
+    public ReplicationStandby(PatientManagement patientManagement, String listenAddress) {
+        this.patientManagement = patientManagement;
+        this.listenAddress = ReplicationProtocol.parseAddress(listenAddress);
+        this.zone = patientManagement.getClock().getZone();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println(Colors.RED + "Usage: java Main --standby <port | host:port | unix:/path>" + Colors.RESET);
+            return;
+        }
+
+        PatientManagement patientManagement = new PatientManagement();
+        patientManagement.setVerbose(false);
+
+        try (ReplicationStandby standby = new ReplicationStandby(patientManagement, args[0])) {
+            System.out.println(Colors.CYAN + "Standby listening on " + args[0] + "..." + Colors.RESET);
+            standby.serveUntilPrimaryLost();
+            System.out.println(Colors.YELLOW + Colors.BOLD + "Primary lost - taking over with " +
+                              patientManagement.getTotalPatientCount() + " waiting patient(s)." + Colors.RESET);
+        } catch (IOException e) {
+            System.out.println(Colors.RED + "Standby error: " + e.getMessage() + Colors.RESET);
+            return;
+        }
+
+        patientManagement.setVerbose(true);
+        new Controller(patientManagement).run();
+    }
+
+    // Waits for a primary, applies its stream, and returns once that primary disconnects
+    public void serveUntilPrimaryLost() throws IOException {
+        server = ReplicationProtocol.listen(listenAddress);
+        try (SocketChannel primary = server.accept()) {
+            System.out.println(Colors.GREEN + "Primary connected - replicating." + Colors.RESET);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(primary), 64 * 1024));
+            DataOutputStream acks = new DataOutputStream(Channels.newOutputStream(primary));
+
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (length < 4 || length > ReplicationProtocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Corrupt replication frame of " + length + " bytes");
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                applyFrame(frame);
+
+                acks.writeLong(appliedLogSequence);
+                acks.flush();
+            }
+        } catch (IOException e) {
+            // A reset connection means the primary is gone, same as a clean close
+            if (server.isOpen()) return;
+            throw e;
+        }
+    }
+
+    void applyFrame(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        int records = in.readInt();
+        for (int i = 0; i < records; i++) {
+            applyRecord(in);
+        }
+        framesApplied++;
+    }
+
+    // Replays are idempotent: snapshots may overlap with changes already streamed
+    private void applyRecord(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        long logSequence = in.readLong();
+        long timestamp = in.readLong();
+
+        switch (op) {
+            case ReplicationProtocol.OP_RESET:
+                patientManagement.clearAllQueues();
+                patientsBySequence.clear();
+                break;
+            case ReplicationProtocol.OP_ENQUEUE: {
+                long sequence = in.readLong();
+                String name = ReplicationProtocol.readString(in);
+                int age = in.readUnsignedByte();
+                LocalDate birthday = LocalDate.ofEpochDay(in.readLong());
+                PatientType type = PatientType.values()[in.readByte()];
+                LocalDateTime arrival = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), zone);
+                String notes = ReplicationProtocol.readString(in);
+                if (!patientsBySequence.containsKey(sequence)) {
+                    Patient patient = Patient.restore(sequence, name, age, birthday, type, arrival, notes,
+                        patientManagement.getClock());
+                    patientsBySequence.put(sequence, patient);
+                    patientManagement.queuePatient(patient);
+                }
+                break;
+            }
+            case ReplicationProtocol.OP_CALL: {
+                Patient patient = patientsBySequence.remove(in.readLong());
+                if (patient != null) patientManagement.callPatient(patient);
+                break;
+            }
+            case ReplicationProtocol.OP_REMOVE: {
+                Patient patient = patientsBySequence.remove(in.readLong());
+                if (patient != null) patientManagement.removePatient(patient);
+                break;
+            }
+            case ReplicationProtocol.OP_CHANGE_TYPE: {
+                Patient patient = patientsBySequence.get(in.readLong());
+                PatientType type = PatientType.values()[in.readByte()];
+                if (patient != null) patientManagement.applyReplicatedTypeChange(patient, type);
+                break;
+            }
+            case ReplicationProtocol.OP_NOTE: {
+                Patient patient = patientsBySequence.get(in.readLong());
+                String note = ReplicationProtocol.readString(in);
+                if (patient != null) patientManagement.addNote(patient, note);
+                break;
+            }
+            default:
+                throw new IOException("Unknown replication op " + op);
+        }
+
+        appliedLogSequence = logSequence;
+        lastRecordTimestamp = timestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        ReplicationProtocol.cleanup(listenAddress);
+    }
+
+    // Metrics
+    public long getAppliedLogSequence() { return appliedLogSequence; }
+    public long getFramesApplied() { return framesApplied; }
+
+    // How far behind the primary's clock the last applied change is
+    public long getReplicationDelayMillis() {
+        return lastRecordTimestamp == 0 ? 0 : Math.max(0, patientManagement.getClock().millis() - lastRecordTimestamp);
+    }
+
+    public PatientManagement getPatientManagement() { return patientManagement; }
+}
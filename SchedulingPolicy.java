@@ -0,0 +1,11 @@
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+// Decides which waiting patient is served next. Only lane heads are compared, so the
+// order must agree with arrival order inside a lane: an earlier arrival of the same
+// type never ranks behind a later one.
+public interface SchedulingPolicy {
+    String getName();
+
+    Comparator<Patient> serviceOrder(LocalDateTime now);
+}
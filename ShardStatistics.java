@@ -0,0 +1,82 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+// Aggregated view over several queue shards; combined pairwise by the fork/join tasks
+public class ShardStatistics {
+    private final long[] waitingByType = new long[PatientType.values().length];
+    private final Map<String, Integer> waitingByShard = new TreeMap<>();
+    private long arrivalsToday;
+    private long emergenciesToday;
+    private long callsToday;
+    private long ageSum;
+    private long patientCount;
+
+    static ShardStatistics of(String key, PatientManagement shard) {
+        ShardStatistics stats = new ShardStatistics();
+        for (PatientType type : PatientType.values()) {
+            stats.waitingByType[type.ordinal()] = shard.getCountByType(type);
+        }
+        stats.waitingByShard.put(key, shard.getTotalPatientCount());
+        stats.arrivalsToday = shard.getTotalPatientsToday();
+        stats.emergenciesToday = shard.getTotalEmergenciesToday();
+        stats.callsToday = shard.getTotalCallsToday();
+        shard.allPatients().forEach(p -> {
+            stats.ageSum += p.getAge();
+            stats.patientCount++;
+        });
+        return stats;
+    }
+
+    ShardStatistics combine(ShardStatistics other) {
+        for (int i = 0; i < waitingByType.length; i++) {
+            waitingByType[i] += other.waitingByType[i];
+        }
+        waitingByShard.putAll(other.waitingByShard);
+        arrivalsToday += other.arrivalsToday;
+        emergenciesToday += other.emergenciesToday;
+        callsToday += other.callsToday;
+        ageSum += other.ageSum;
+        patientCount += other.patientCount;
+        return this;
+    }
+
+    public long getWaiting(PatientType type) { return waitingByType[type.ordinal()]; }
+    public long getTotalWaiting() {
+        long total = 0;
+        for (long count : waitingByType) total += count;
+        return total;
+    }
+    public Map<String, Integer> getWaitingByShard() { return waitingByShard; }
+    public long getArrivalsToday() { return arrivalsToday; }
+    public long getEmergenciesToday() { return emergenciesToday; }
+    public long getCallsToday() { return callsToday; }
+    public double getAverageAge() { return patientCount == 0 ? 0 : (double) ageSum / patientCount; }
+
+    public String getBusiestShard() {
+        String busiest = null;
+        for (Map.Entry<String, Integer> entry : waitingByShard.entrySet()) {
+            if (busiest == null || entry.getValue() > waitingByShard.get(busiest)) {
+                busiest = entry.getKey();
+            }
+        }
+        return busiest;
+    }
+
+    public void print() {
+        System.out.println("\n" + Colors.CYAN + Colors.BOLD + "=== ALL DEPARTMENTS ===" + Colors.RESET);
+        for (Map.Entry<String, Integer> entry : waitingByShard.entrySet()) {
+            System.out.println(Colors.WHITE + "  " + entry.getKey() + ": " + entry.getValue() + " waiting" + Colors.RESET);
+        }
+        System.out.println(Colors.WHITE + "\nWaiting by Type:" + Colors.RESET);
+        for (PatientType type : PatientType.values()) {
+            System.out.println(type.getColor() + "  " + type.name() + ": " + getWaiting(type) + Colors.RESET);
+        }
+        System.out.println(Colors.CYAN + "  Total Waiting: " + getTotalWaiting() + Colors.RESET);
+        System.out.println(Colors.GREEN + "  Arrivals Today: " + arrivalsToday + " | Calls Today: " + callsToday + Colors.RESET);
+        System.out.println(Colors.RED + "  Emergencies Today: " + emergenciesToday + Colors.RESET);
+        System.out.println(Colors.PURPLE + "  Average Age: " + String.format("%.1f", getAverageAge()) + " years" + Colors.RESET);
+        if (getBusiestShard() != null) {
+            System.out.println(Colors.YELLOW + "  Busiest: " + getBusiestShard() + Colors.RESET);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+// Hosts one independent PatientManagement per department or site in a single JVM.
+// Shards share no locks or counters, so a busy department never stalls another.
+public class ShardedQueueManager {
+    private final Map<String, PatientManagement> shards = new ConcurrentHashMap<>();
+    private final Map<String, Object> transferLocks = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool;
+    private final Clock clock;
+
+    public ShardedQueueManager() {
+        this(Clock.systemDefaultZone(), ForkJoinPool.commonPool());
+    }
+
+    public ShardedQueueManager(Clock clock, ForkJoinPool pool) {
+        this.clock = clock;
+        this.pool = pool;
+    }
+
+    public PatientManagement getOrCreateShard(String key) {
+        return shards.computeIfAbsent(normalize(key), k -> {
+            PatientManagement shard = new PatientManagement(clock);
+            shard.setVerbose(false);
+            return shard;
+        });
+    }
+
+    // Registers a queue created elsewhere, e.g. the one the batch runner started with
+    public boolean addShard(String key, PatientManagement shard) {
+        return shards.putIfAbsent(normalize(key), shard) == null;
+    }
+
+    public PatientManagement getShard(String key) {
+        return shards.get(normalize(key));
+    }
+
+    public boolean removeShard(String key) {
+        PatientManagement shard = getShard(key);
+        if (shard == null || shard.getTotalPatientCount() > 0) return false;
+        return shards.remove(normalize(key), shard);
+    }
+
+    public List<String> getShardKeys() {
+        List<String> keys = new ArrayList<>(shards.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    public int getShardCount() { return shards.size(); }
+
+    public ShardStatistics aggregateStatistics() {
+        List<Map.Entry<String, PatientManagement>> entries = new ArrayList<>(shards.entrySet());
+        if (entries.isEmpty()) return new ShardStatistics();
+        return pool.invoke(new ShardTask<>(entries, 0, entries.size(),
+            entry -> ShardStatistics.of(entry.getKey(), entry.getValue()),
+            ShardStatistics::combine));
+    }
+
+    // Partial name search across every shard, keyed by shard
+    public Map<String, List<Patient>> searchPatientsByName(String searchName) {
+        List<Map.Entry<String, PatientManagement>> entries = new ArrayList<>(shards.entrySet());
+        if (entries.isEmpty()) return new TreeMap<>();
+        return pool.invoke(new ShardTask<>(entries, 0, entries.size(),
+            entry -> {
+                Map<String, List<Patient>> found = new TreeMap<>();
+                List<Patient> matches = entry.getValue().searchPatientsByName(searchName);
+                if (!matches.isEmpty()) found.put(entry.getKey(), matches);
+                return found;
+            },
+            (left, right) -> {
+                left.putAll(right);
+                return left;
+            }));
+    }
+
+    // Moves a waiting patient between shards: either the patient ends up in the target lane
+    // or stays in the source. Fails if the patient was called meanwhile or the target lane is full.
+    public boolean transferPatient(String fromKey, String toKey, String patientName) {
+        PatientManagement source = getShard(fromKey);
+        PatientManagement target = getShard(toKey);
+        if (source == null || target == null || source == target) return false;
+
+        // Lock in key order so opposite transfers cannot deadlock
+        String fromShard = normalize(fromKey);
+        String toShard = normalize(toKey);
+        String first = fromShard.compareTo(toShard) < 0 ? fromShard : toShard;
+        String second = first.equals(fromShard) ? toShard : fromShard;
+
+        synchronized (transferLock(first)) {
+            synchronized (transferLock(second)) {
+                Patient patient = source.findPatientByExactName(patientName);
+                if (patient == null) return false;
+
+                // The target's admission lock covers the check, the removal and the queueing;
+                // the move counts as neither a new arrival nor a call
+                if (!target.admitTransfer(patient, () -> source.removePatient(patient)).isQueuedHere()) {
+                    return false;
+                }
+                target.addNote(patient, "Transferred from " + fromShard + " to " + toShard);
+                return true;
+            }
+        }
+    }
+
+    private Object transferLock(String key) {
+        return transferLocks.computeIfAbsent(key, k -> new Object());
+    }
+
+    private static String normalize(String key) {
+        return key.trim().toUpperCase();
+    }
+
+    // Splits the shard list in halves until single shards remain, then combines results
+    private static class ShardTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map.Entry<String, PatientManagement>> entries;
+        private final int from;
+        private final int to;
+        private final Function<Map.Entry<String, PatientManagement>, R> leaf;
+        private final BinaryOperator<R> combiner;
+
+        ShardTask(List<Map.Entry<String, PatientManagement>> entries, int from, int to,
+                  Function<Map.Entry<String, PatientManagement>, R> leaf, BinaryOperator<R> combiner) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.leaf = leaf;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from == 1) {
+                return leaf.apply(entries.get(from));
+            }
+            int middle = (from + to) >>> 1;
+            ShardTask<R> left = new ShardTask<>(entries, from, middle, leaf, combiner);
+            ShardTask<R> right = new ShardTask<>(entries, middle, to, leaf, combiner);
+            left.fork();
+            R rightResult = right.compute();
+            return combiner.apply(left.join(), rightResult);
+        }
+    }
+}
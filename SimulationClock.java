@@ -0,0 +1,43 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+// A clock that only moves when told to, for simulations and deterministic replays
+public class SimulationClock extends Clock {
+    private final ZoneId zone;
+    private volatile long currentMillis;
+
+    public SimulationClock(Instant start) {
+        this(start, ZoneId.systemDefault());
+    }
+
+    public SimulationClock(Instant start, ZoneId zone) {
+        this.currentMillis = start.toEpochMilli();
+        this.zone = zone;
+    }
+
+    public void setMillis(long epochMillis) {
+        if (epochMillis < currentMillis) {
+            throw new IllegalArgumentException("Simulation time cannot move backwards");
+        }
+        currentMillis = epochMillis;
+    }
+
+    public void advanceMillis(long millis) {
+        setMillis(currentMillis + millis);
+    }
+
+    @Override
+    public long millis() { return currentMillis; }
+
+    @Override
+    public Instant instant() { return Instant.ofEpochMilli(currentMillis); }
+
+    @Override
+    public ZoneId getZone() { return zone; }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new SimulationClock(instant(), zone);
+    }
+}
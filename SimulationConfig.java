@@ -0,0 +1,142 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class SimulationConfig {
+    private long patientCount = 100_000;
+    private double arrivalsPerHour = 30;
+    private int doctors = 3;
+    private double emergencyShare = 0.10;
+    private double ageMean = 45;
+    private double ageStdDev = 22;
+    private Map<PatientType, Double> serviceMinutes = new EnumMap<>(PatientType.class);
+    private long seed = 42;
+    private String tracePath = null;
+    private boolean enforceCapacity = true;
+    private SchedulingPolicy schedulingPolicy = new StrictPriorityPolicy();
+    private AdmissionPolicy admissionPolicy = new DivertWhenFullPolicy();
+    // Fixed by default so the same seed gives the same report on any day
+    private LocalDateTime startTime = LocalDate.of(2024, 1, 1).atTime(8, 0);
+
+    public SimulationConfig() {
+        serviceMinutes.put(PatientType.EMERGENCY, 20.0);
+        serviceMinutes.put(PatientType.SENIOR, 12.0);
+        serviceMinutes.put(PatientType.REGULAR, 8.0);
+    }
+
+    public static SimulationConfig fromArgs(String[] args) {
+        SimulationConfig config = new SimulationConfig();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--unbounded")) {
+                config.enforceCapacity = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--patients": config.patientCount = Long.parseLong(value); break;
+                case "--rate": config.arrivalsPerHour = Double.parseDouble(value); break;
+                case "--doctors": config.doctors = Integer.parseInt(value); break;
+                case "--emergency-share": config.emergencyShare = Double.parseDouble(value); break;
+                case "--age-mean": config.ageMean = Double.parseDouble(value); break;
+                case "--age-sd": config.ageStdDev = Double.parseDouble(value); break;
+                case "--seed": config.seed = Long.parseLong(value); break;
+                case "--start": config.startTime = parseStart(value); break;
+                case "--trace": config.tracePath = value; break;
+                case "--service-minutes": config.parseServiceMinutes(value); break;
+                case "--policy": config.schedulingPolicy = parsePolicy(value); break;
+                case "--admission": config.admissionPolicy = AdmissionController.parsePolicy(value); break;
+                default: throw new IllegalArgumentException("Unknown simulation option: " + option);
+            }
+        }
+        config.validate();
+        return config;
+    }
+
+    private static LocalDateTime parseStart(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("--start expects yyyy-MM-ddTHH:mm");
+        }
+    }
+
+    // strict | aging | aging:<minutes per level>
+    static SchedulingPolicy parsePolicy(String value) {
+        String[] parts = value.toLowerCase().split(":");
+        switch (parts[0]) {
+            case "strict": return new StrictPriorityPolicy();
+            case "aging":
+                return parts.length > 1 ? new AgingPriorityPolicy(Double.parseDouble(parts[1])) : new AgingPriorityPolicy();
+            default: throw new IllegalArgumentException("Unknown policy: " + value);
+        }
+    }
+
+    // Format: emergency,senior,regular (e.g. 20,12,8)
+    private void parseServiceMinutes(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != PatientType.values().length) {
+            throw new IllegalArgumentException("--service-minutes expects emergency,senior,regular");
+        }
+        for (PatientType type : PatientType.values()) {
+            serviceMinutes.put(type, Double.parseDouble(parts[type.ordinal()].trim()));
+        }
+    }
+
+    private void validate() {
+        if (doctors < 1) throw new IllegalArgumentException("At least one doctor is required.");
+        if (arrivalsPerHour <= 0) throw new IllegalArgumentException("Arrival rate must be positive.");
+        if (emergencyShare < 0 || emergencyShare > 1) throw new IllegalArgumentException("Emergency share must be between 0 and 1.");
+        for (double minutes : serviceMinutes.values()) {
+            if (minutes <= 0) throw new IllegalArgumentException("Service times must be positive.");
+        }
+    }
+
+    public static String usage() {
+        return "Simulation options:\n" +
+               "  --patients N            synthetic arrivals to generate (default 100000)\n" +
+               "  --rate R                Poisson arrivals per hour (default 30)\n" +
+               "  --doctors N             parallel doctors (default 3)\n" +
+               "  --emergency-share S     fraction of emergency arrivals, 0-1 (default 0.10)\n" +
+               "  --age-mean M --age-sd D normal age distribution (default 45 / 22)\n" +
+               "  --service-minutes E,S,R mean service minutes per type (default 20,12,8)\n" +
+               "  --trace FILE            replay arrivals from CSV: offsetSeconds,type,age\n" +
+               "  --policy P              strict | aging | aging:<minutes per level> (default strict)\n" +
+               "  --admission A           reject | divert | waitlist, optionally :<emergency headroom> (default divert)\n" +
+               "  --seed N                random seed (default 42)\n" +
+               "  --start T               simulated start, yyyy-MM-ddTHH:mm (default 2024-01-01T08:00)\n" +
+               "  --unbounded             ignore QueueConfig capacity limits";
+    }
+
+    // Getters
+    public long getPatientCount() { return patientCount; }
+    public double getArrivalsPerHour() { return arrivalsPerHour; }
+    public int getDoctors() { return doctors; }
+    public double getEmergencyShare() { return emergencyShare; }
+    public double getAgeMean() { return ageMean; }
+    public double getAgeStdDev() { return ageStdDev; }
+    public double getServiceMinutes(PatientType type) { return serviceMinutes.get(type); }
+    public long getSeed() { return seed; }
+    public String getTracePath() { return tracePath; }
+    public boolean isEnforceCapacity() { return enforceCapacity; }
+    public LocalDateTime getStartTime() { return startTime; }
+    public SchedulingPolicy getSchedulingPolicy() { return schedulingPolicy; }
+    public AdmissionPolicy getAdmissionPolicy() { return admissionPolicy; }
+
+    // Setters for programmatic use
+    public SimulationConfig setPatientCount(long patientCount) { this.patientCount = patientCount; return this; }
+    public SimulationConfig setArrivalsPerHour(double arrivalsPerHour) { this.arrivalsPerHour = arrivalsPerHour; return this; }
+    public SimulationConfig setDoctors(int doctors) { this.doctors = doctors; return this; }
+    public SimulationConfig setEmergencyShare(double emergencyShare) { this.emergencyShare = emergencyShare; return this; }
+    public SimulationConfig setSeed(long seed) { this.seed = seed; return this; }
+    public SimulationConfig setTracePath(String tracePath) { this.tracePath = tracePath; return this; }
+    public SimulationConfig setEnforceCapacity(boolean enforceCapacity) { this.enforceCapacity = enforceCapacity; return this; }
+    public SimulationConfig setStartTime(LocalDateTime startTime) { this.startTime = startTime; return this; }
+    public SimulationConfig setSchedulingPolicy(SchedulingPolicy schedulingPolicy) { this.schedulingPolicy = schedulingPolicy; return this; }
+    public SimulationConfig setAdmissionPolicy(AdmissionPolicy admissionPolicy) { this.admissionPolicy = admissionPolicy; return this; }
+}
@@ -0,0 +1,134 @@
+public class SimulationReport {
+    private static final int MAX_TRACKED_WAIT_SECONDS = 24 * 60 * 60;
+
+    private final int doctors;
+    private long arrivals;
+    private long admitted;
+    private long rejected;
+    private long waitlisted;
+    private long served;
+    private long doctorBusyMillis;
+    private long simulatedMillis;
+    private long wallNanos;
+    private int maxQueueLength;
+    private final long[] breachesByType = new long[PatientType.values().length];
+    private final long[] divertedByType = new long[PatientType.values().length];
+    private final WaitHistogram overallWaits = new WaitHistogram();
+    private final WaitHistogram[] waitsByType = new WaitHistogram[PatientType.values().length];
+
+    public SimulationReport(int doctors) {
+        this.doctors = doctors;
+        for (int i = 0; i < waitsByType.length; i++) {
+            waitsByType[i] = new WaitHistogram();
+        }
+    }
+
+    void recordArrival() { arrivals++; }
+    void recordAdmitted(int queueLength) {
+        admitted++;
+        maxQueueLength = Math.max(maxQueueLength, queueLength);
+    }
+    void recordRejected() { rejected++; }
+    void recordWaitlisted() { waitlisted++; }
+    void recordBreach(PatientType type) { breachesByType[type.ordinal()]++; }
+    void recordDiverted(PatientType type) { divertedByType[type.ordinal()]++; }
+    void recordServed(PatientType type, long waitMillis, long serviceMillis) {
+        served++;
+        overallWaits.record(waitMillis);
+        waitsByType[type.ordinal()].record(waitMillis);
+        doctorBusyMillis += serviceMillis;
+    }
+    void finish(long simulatedMillis, long wallNanos) {
+        this.simulatedMillis = simulatedMillis;
+        this.wallNanos = wallNanos;
+    }
+
+    // Getters
+    public long getArrivals() { return arrivals; }
+    public long getAdmitted() { return admitted; }
+    public long getRejected() { return rejected; }
+    public long getWaitlisted() { return waitlisted; }
+    public long getServed() { return served; }
+    public int getMaxQueueLength() { return maxQueueLength; }
+    public long getBreaches(PatientType type) { return breachesByType[type.ordinal()]; }
+    public long getDiverted(PatientType type) { return divertedByType[type.ordinal()]; }
+    public double getWaitPercentileMinutes(double percentile) { return overallWaits.percentileSeconds(percentile) / 60.0; }
+    public double getWaitPercentileMinutes(PatientType type, double percentile) {
+        return waitsByType[type.ordinal()].percentileSeconds(percentile) / 60.0;
+    }
+
+    public double getServedPerHour() {
+        return simulatedMillis == 0 ? 0 : served / (simulatedMillis / 3_600_000.0);
+    }
+
+    public double getDoctorUtilization() {
+        return simulatedMillis == 0 ? 0 : (double) doctorBusyMillis / ((double) simulatedMillis * doctors);
+    }
+
+    public double getSimulatedPatientsPerSecond() {
+        return wallNanos == 0 ? 0 : arrivals / (wallNanos / 1_000_000_000.0);
+    }
+
+    public void print() {
+        System.out.println("\n" + Colors.CYAN + Colors.BOLD + "=== SIMULATION REPORT ===" + Colors.RESET);
+        System.out.println(Colors.WHITE + "Simulated span: " + String.format("%.1f", simulatedMillis / 3_600_000.0) + " h" +
+                          " with " + doctors + " doctor(s)" + Colors.RESET);
+        System.out.println(Colors.WHITE + "Engine speed: " + String.format("%,.0f", getSimulatedPatientsPerSecond() * 60) +
+                          " simulated patients/min (" + String.format("%.2f", wallNanos / 1_000_000_000.0) + " s wall)" + Colors.RESET);
+
+        System.out.println(Colors.WHITE + "\nThroughput:" + Colors.RESET);
+        System.out.println(Colors.GREEN + "  Arrivals: " + arrivals + " | Admitted: " + admitted +
+                          " | Served: " + served + Colors.RESET);
+        System.out.println(Colors.RED + "  Turned away: " + rejected + Colors.RESET);
+        if (waitlisted > 0) {
+            System.out.println(Colors.ORANGE + "  Waitlisted (admitted later): " + waitlisted + Colors.RESET);
+        }
+        System.out.println(Colors.GREEN + "  Served per hour: " + String.format("%.1f", getServedPerHour()) + Colors.RESET);
+        System.out.println(Colors.PURPLE + "  Doctor utilization: " + String.format("%.1f", getDoctorUtilization() * 100) + "%" + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Longest queue: " + maxQueueLength + Colors.RESET);
+
+        System.out.println(Colors.WHITE + "\nWait Times (minutes, p50 / p90 / p99 / max):" + Colors.RESET);
+        System.out.println(Colors.CYAN + "  ALL: " + overallWaits.summary() + Colors.RESET);
+        for (PatientType type : PatientType.values()) {
+            System.out.println(type.getColor() + "  " + type.name() + ": " + waitsByType[type.ordinal()].summary() + Colors.RESET);
+        }
+
+        System.out.println(Colors.WHITE + "\nCapacity Breaches (lane full on arrival / diverted):" + Colors.RESET);
+        for (PatientType type : PatientType.values()) {
+            System.out.println(type.getColor() + "  " + type.name() + ": " + breachesByType[type.ordinal()] +
+                              " / " + divertedByType[type.ordinal()] + Colors.RESET);
+        }
+    }
+
+    // One-second buckets up to a day; longer waits share the last bucket
+    private static class WaitHistogram {
+        private final long[] buckets = new long[MAX_TRACKED_WAIT_SECONDS + 1];
+        private long count;
+        private long maxMillis;
+
+        void record(long waitMillis) {
+            int second = (int) Math.min(waitMillis / 1000, MAX_TRACKED_WAIT_SECONDS);
+            buckets[second]++;
+            count++;
+            maxMillis = Math.max(maxMillis, waitMillis);
+        }
+
+        double percentileSeconds(double percentile) {
+            if (count == 0) return 0;
+            long target = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int second = 0; second < buckets.length; second++) {
+                seen += buckets[second];
+                if (seen >= target) return second;
+            }
+            return MAX_TRACKED_WAIT_SECONDS;
+        }
+
+        String summary() {
+            if (count == 0) return "no patients served";
+            return String.format("%.1f / %.1f / %.1f / %.1f",
+                percentileSeconds(0.50) / 60.0, percentileSeconds(0.90) / 60.0,
+                percentileSeconds(0.99) / 60.0, maxMillis / 60_000.0);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+// Hands waiting patients to treatment stations; stations may call concurrently. A station
+// that frees up, and every idle station when someone arrives, takes the next eligible
+// patient without anyone picking the room.
+public class StationDispatcher implements QueueListener {
+    private final PatientManagement patientManagement;
+    private final List<TreatmentStation> stations = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inTreatment = new AtomicInteger();
+    private volatile BiConsumer<TreatmentStation, Patient> onAssigned = (station, patient) -> {};
+
+    public StationDispatcher(PatientManagement patientManagement) {
+        this.patientManagement = patientManagement;
+        patientManagement.addQueueListener(this);
+    }
+
+    // A new room starts with the next eligible patient if anyone is waiting
+    public boolean addStation(TreatmentStation station) {
+        synchronized (this) {
+            if (findStation(station.getName()) != null) return false;
+            stations.add(station);
+        }
+        callNext(station);
+        return true;
+    }
+
+    // Only idle stations can be closed, so no patient is left without a room
+    public synchronized boolean removeStation(String name) {
+        TreatmentStation station = findStation(name);
+        if (station == null || !station.tryBeginCall()) return false;
+        stations.remove(station);
+        return true;
+    }
+
+    public TreatmentStation findStation(String name) {
+        for (TreatmentStation station : stations) {
+            if (station.getName().equalsIgnoreCase(name)) return station;
+        }
+        return null;
+    }
+
+    // Runs on the thread that made the assignment, e.g. to time the treatment
+    public void setOnAssigned(BiConsumer<TreatmentStation, Patient> onAssigned) {
+        this.onAssigned = onAssigned;
+    }
+
+    // The station takes the next eligible patient; null if it is busy or nobody eligible is waiting
+    public Patient callNext(TreatmentStation station) {
+        if (!station.tryBeginCall()) return null;
+
+        Patient patient = patientManagement.dequeuePatient(station.getEligibleTypes());
+        if (patient == null) {
+            station.cancelCall();
+            return null;
+        }
+
+        inTreatment.incrementAndGet();
+        station.startTreatment(patient, LocalDateTime.now(patientManagement.getClock()));
+        onAssigned.accept(station, patient);
+        return patient;
+    }
+
+    // Frees the station and gives it the next eligible patient; returns the patient who finished
+    public Patient completeTreatment(TreatmentStation station) {
+        Patient finished = station.finishTreatment();
+        if (finished != null) {
+            inTreatment.decrementAndGet();
+            callNext(station);
+        }
+        return finished;
+    }
+
+    // Fills every idle station; returns how many patients were assigned
+    public int dispatchIdleStations() {
+        int assigned = 0;
+        for (TreatmentStation station : stations) {
+            if (station.isIdle() && callNext(station) != null) {
+                assigned++;
+            }
+        }
+        return assigned;
+    }
+
+    // Null if the patient is not in treatment here
+    public TreatmentStation findStationTreating(Patient patient) {
+        for (TreatmentStation station : stations) {
+            TreatmentStation.Treatment treatment = station.getCurrentTreatment();
+            if (treatment != null && treatment.getPatient() == patient) return station;
+        }
+        return null;
+    }
+
+    // Queue listener callbacks: a patient joining a lane may be someone an idle room accepts
+
+    @Override
+    public void onPatientQueued(Patient patient) {
+        dispatchIdleStations();
+    }
+
+    @Override
+    public void onPatientTypeChanged(Patient patient, PatientType oldType) {
+        dispatchIdleStations();
+    }
+
+    public List<TreatmentStation> getStations() { return stations; }
+    public int getStationCount() { return stations.size(); }
+    public int getInTreatmentCount() { return inTreatment.get(); }
+}
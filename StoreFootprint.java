@@ -0,0 +1,77 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+// Measures the heap held by the same synthetic registry as Patient objects in a list and
+// as a CompactPatientStore: java Main --footprint [patients]. Each figure is used heap
+// after a full GC, so it includes object headers and padding that estimates leave out.
+public class StoreFootprint {
+    private static final String[] FIRST_NAMES = {
+        "Anna", "Ben", "Clara", "David", "Emma", "Felix", "Greta", "Hannah", "Jonas", "Klara",
+        "Lukas", "Mia", "Noah", "Olivia", "Paul", "Sophie", "Tim", "Ursula", "Valentin", "Zoe"
+    };
+    private static final String[] LAST_NAMES = {
+        "Becker", "Fischer", "Hoffmann", "Koch", "Meyer", "Müller", "Richter", "Schmidt",
+        "Schneider", "Schulz", "Wagner", "Weber", "Wolf", "Zimmermann"
+    };
+    private static final String[] NOTES = {
+        "", "Walk-in", "Referred by GP", "Arrived by ambulance", "Follow-up visit", "Allergic to penicillin"
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        // Each layout is built on its own from the same seed, so neither is measured with the other
+        long baseline = usedHeap();
+        List<Patient> patients = new ArrayList<>(count);
+        generate(count, patients::add);
+        long objectBytes = usedHeap() - baseline;
+        int listed = patients.size();
+        patients = null;
+
+        baseline = usedHeap();
+        CompactPatientStore store = new CompactPatientStore(Clock.systemUTC());
+        generate(count, store::add);
+        long storeBytes = usedHeap() - baseline;
+
+        System.out.println(Colors.CYAN + Colors.BOLD + "=== REGISTRY FOOTPRINT (" + count + " patients) ===" + Colors.RESET);
+        System.out.println(Colors.WHITE + "  Patient objects in a list: " + objectBytes / count + " B/patient" + Colors.RESET);
+        System.out.println(Colors.WHITE + "  CompactPatientStore:       " + storeBytes / count + " B/patient" + 
+                          " (its own estimate: " + store.getBytesPerPatient() + ")" + Colors.RESET);
+        // Keeps the store reachable until it has been measured
+        System.out.println(Colors.WHITE + "  Records kept: " + listed + " / " + store.size() + Colors.RESET);
+    }
+
+    // Roughly one distinct name per two patients, short notes drawn from a few common ones
+    private static void generate(int count, Consumer<Patient> sink) {
+        SimulationClock clock = new SimulationClock(Instant.parse("2024-01-01T08:00:00Z"), ZoneOffset.UTC);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < count; i++) {
+            clock.advanceMillis(1000 + random.nextInt(60_000));
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " +
+                LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + random.nextInt(Math.max(1, count / 2));
+            int age = random.nextInt(100);
+            PatientType type = random.nextInt(10) == 0 ? PatientType.EMERGENCY
+                : age >= 75 ? PatientType.SENIOR : PatientType.REGULAR;
+            LocalDate birthday = LocalDate.of(2023, 6, 1).minusYears(age).minusDays(random.nextInt(365));
+            sink.accept(new Patient(name, age, birthday, type, NOTES[random.nextInt(NOTES.length)], clock));
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,17 @@
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+// Type priority first, then arrival time
+public class StrictPriorityPolicy implements SchedulingPolicy {
+    private static final Comparator<Patient> ORDER = Comparator
+        .comparingInt((Patient p) -> p.getType().getPriority())
+        .thenComparing(PatientLane.ARRIVAL_ORDER);
+
+    @Override
+    public String getName() { return "Strict priority"; }
+
+    @Override
+    public Comparator<Patient> serviceOrder(LocalDateTime now) {
+        return ORDER;
+    }
+}
@@ -0,0 +1,105 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Deduplicating string storage: every distinct value is kept once as UTF-8 bytes in a
+// shared buffer and identified by a small int id, so equal strings compare by id.
+// Append-only; owners that drop values rebuild a fresh arena with the live ones.
+public class StringArena {
+    private static final int INITIAL_IDS = 256;
+
+    private byte[] bytes = new byte[4096];
+    private int usedBytes = 0;
+    private int[] offsets = new int[INITIAL_IDS];
+    private int[] lengths = new int[INITIAL_IDS];
+    private int[] hashes = new int[INITIAL_IDS];
+    private int count = 0;
+
+    // Open addressing over ids; 0 marks an empty bucket, otherwise id + 1
+    private int[] table = new int[INITIAL_IDS * 2];
+
+    // Returns the id of value, adding it if it is new
+    public synchronized int intern(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(encoded);
+        int bucket = findBucket(encoded, hash);
+        if (table[bucket] != 0) return table[bucket] - 1;
+
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        if (usedBytes + encoded.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, usedBytes + encoded.length));
+        }
+        System.arraycopy(encoded, 0, bytes, usedBytes, encoded.length);
+
+        int id = count++;
+        offsets[id] = usedBytes;
+        lengths[id] = encoded.length;
+        hashes[id] = hash;
+        usedBytes += encoded.length;
+
+        table[bucket] = id + 1;
+        if (count * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    // The id of value, or -1 if it was never interned; never adds anything
+    public synchronized int find(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        int bucket = findBucket(encoded, hash(encoded));
+        return table[bucket] - 1;
+    }
+
+    public synchronized String get(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        return new String(bytes, offsets[id], lengths[id], StandardCharsets.UTF_8);
+    }
+
+    public synchronized int size() { return count; }
+
+    // Heap held by the arena, for footprint comparisons
+    public synchronized long getByteSize() {
+        return bytes.length + 12L * offsets.length + 4L * table.length;
+    }
+
+    private int findBucket(byte[] encoded, int hash) {
+        int mask = table.length - 1;
+        int bucket = hash & mask;
+        while (table[bucket] != 0) {
+            int id = table[bucket] - 1;
+            if (hashes[id] == hash && lengths[id] == encoded.length &&
+                Arrays.equals(bytes, offsets[id], offsets[id] + lengths[id], encoded, 0, encoded.length)) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return bucket;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < count; id++) {
+            int bucket = hashes[id] & mask;
+            while (table[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            table[bucket] = id + 1;
+        }
+    }
+
+    private static int hash(byte[] encoded) {
+        int h = 1;
+        for (byte b : encoded) {
+            h = 31 * h + b;
+        }
+        // Spread the bits so sequential names do not cluster in the table
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,165 @@
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Renders "yyyy-MM-dd HH:mm:ss" timestamps without DateTimeFormatter. The text for the
+// current second is cached and only re-rendered when the clock moves to a new second;
+// other times are written digit by digit straight into the caller's StringBuilder.
+public class TimestampFormatter {
+    public static final int LENGTH = 19;
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static volatile TimestampFormatter lastCreated = new TimestampFormatter(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile Rendered current = new Rendered(Long.MIN_VALUE, Long.MIN_VALUE, new char[LENGTH]);
+
+    // Immutable so readers never see a half-rendered second
+    private static final class Rendered {
+        final long epochSecond;
+        final long epochDay;
+        final char[] text;
+
+        Rendered(long epochSecond, long epochDay, char[] text) {
+            this.epochSecond = epochSecond;
+            this.epochDay = epochDay;
+            this.text = text;
+        }
+    }
+
+    public TimestampFormatter(Clock clock) {
+        this.clock = clock;
+    }
+
+    // Shares one formatter between callers using the same clock, e.g. every patient of a queue
+    public static TimestampFormatter forClock(Clock clock) {
+        TimestampFormatter formatter = lastCreated;
+        if (!formatter.clock.equals(clock)) {
+            formatter = new TimestampFormatter(clock);
+            lastCreated = formatter;
+        }
+        return formatter;
+    }
+
+    public void appendNow(StringBuilder out) {
+        out.append(renderCurrentSecond().text);
+    }
+
+    public String now() {
+        return new String(renderCurrentSecond().text);
+    }
+
+    public Clock getClock() { return clock; }
+
+    private Rendered renderCurrentSecond() {
+        Rendered cached = current;
+        long millis = clock.millis();
+        long epochSecond = Math.floorDiv(millis, 1000L);
+        if (epochSecond == cached.epochSecond) return cached;
+
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        long localSecond = epochSecond + clock.getZone().getRules().getOffset(instant).getTotalSeconds();
+        long epochDay = Math.floorDiv(localSecond, 86_400L);
+
+        char[] text = new char[LENGTH];
+        if (epochDay == cached.epochDay) {
+            System.arraycopy(cached.text, 0, text, 0, 11);
+        } else {
+            writeDate(text, LocalDateTime.ofEpochSecond(localSecond, 0, ZoneOffset.UTC));
+        }
+        writeTime(text, (int) Math.floorMod(localSecond, 86_400L));
+
+        Rendered rendered = new Rendered(epochSecond, epochDay, text);
+        current = rendered;
+        return rendered;
+    }
+
+    // Arbitrary local date-times, e.g. arrival times on edit screens
+    public static void appendTo(StringBuilder out, LocalDateTime time) {
+        appendDigits(out, time.getYear(), 4);
+        out.append('-');
+        appendDigits(out, time.getMonthValue(), 2);
+        out.append('-');
+        appendDigits(out, time.getDayOfMonth(), 2);
+        out.append(' ');
+        appendDigits(out, time.getHour(), 2);
+        out.append(':');
+        appendDigits(out, time.getMinute(), 2);
+        out.append(':');
+        appendDigits(out, time.getSecond(), 2);
+    }
+
+    public static String format(LocalDateTime time) {
+        StringBuilder out = new StringBuilder(LENGTH);
+        appendTo(out, time);
+        return out.toString();
+    }
+
+    // Reads a timestamp at offset as local seconds since the epoch; INVALID if malformed
+    public static long parseLocalEpochSecond(CharSequence text, int offset) {
+        if (text.length() < offset + LENGTH) return INVALID;
+        if (text.charAt(offset + 4) != '-' || text.charAt(offset + 7) != '-' || text.charAt(offset + 10) != ' ' ||
+            text.charAt(offset + 13) != ':' || text.charAt(offset + 16) != ':') {
+            return INVALID;
+        }
+        int year = parseDigits(text, offset, 4);
+        int month = parseDigits(text, offset + 5, 2);
+        int day = parseDigits(text, offset + 8, 2);
+        int hour = parseDigits(text, offset + 11, 2);
+        int minute = parseDigits(text, offset + 14, 2);
+        int second = parseDigits(text, offset + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 ||
+            hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            return INVALID; // e.g. February 30th
+        }
+    }
+
+    private static void writeDate(char[] text, LocalDateTime time) {
+        writeDigits(text, 0, time.getYear(), 4);
+        text[4] = '-';
+        writeDigits(text, 5, time.getMonthValue(), 2);
+        text[7] = '-';
+        writeDigits(text, 8, time.getDayOfMonth(), 2);
+        text[10] = ' ';
+    }
+
+    private static void writeTime(char[] text, int secondOfDay) {
+        writeDigits(text, 11, secondOfDay / 3600, 2);
+        text[13] = ':';
+        writeDigits(text, 14, secondOfDay / 60 % 60, 2);
+        text[16] = ':';
+        writeDigits(text, 17, secondOfDay % 60, 2);
+    }
+
+    private static void writeDigits(char[] text, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static void appendDigits(StringBuilder out, int value, int width) {
+        int divisor = 1;
+        for (int i = 1; i < width; i++) divisor *= 10;
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int parseDigits(CharSequence text, int offset, int width) {
+        int value = 0;
+        for (int i = offset; i < offset + width; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,148 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+public class TrafficCounters {
+    public enum Event { ARRIVAL, CALL, EMERGENCY }
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int EVENT_COUNT = Event.values().length;
+
+    private final Clock clock;
+    private final ZoneId zone;
+
+    // Running totals since startup
+    private final long[] totals = new long[EVENT_COUNT];
+
+    // Minute ring: each slot holds the running totals at the start of that minute
+    private final long[][] minuteBase = new long[EVENT_COUNT][MINUTES_PER_DAY];
+    private final long[] minuteStamp = new long[MINUTES_PER_DAY];
+
+    // Hour buckets for the current day
+    private final long[][] hourCounts = new long[EVENT_COUNT][24];
+    private final long[] dayBase = new long[EVENT_COUNT];
+
+    private final long firstMinute;
+    private long currentMinute;
+    private int currentHour;
+    private LocalDate currentDay;
+
+    public TrafficCounters() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public TrafficCounters(Clock clock) {
+        this.clock = clock;
+        this.zone = clock.getZone();
+        this.firstMinute = epochMinute();
+        this.currentMinute = firstMinute;
+        this.currentDay = dayOf(firstMinute);
+        this.currentHour = hourOf(firstMinute);
+        stampMinute(firstMinute);
+    }
+
+    public synchronized void record(Event event) {
+        advance();
+        totals[event.ordinal()]++;
+        hourCounts[event.ordinal()][currentHour]++;
+    }
+
+    // Events of the given kind since local midnight
+    public synchronized long countToday(Event event) {
+        advance();
+        return totals[event.ordinal()] - dayBase[event.ordinal()];
+    }
+
+    // Events of the given kind during the last `minutes` minutes (including the current one)
+    public synchronized long countLastMinutes(Event event, int minutes) {
+        advance();
+        if (minutes <= 0) return 0;
+
+        long startMinute = currentMinute - Math.min(minutes, MINUTES_PER_DAY) + 1;
+        if (startMinute <= firstMinute) {
+            return totals[event.ordinal()];
+        }
+        int slot = slotOf(startMinute);
+        return totals[event.ordinal()] - minuteBase[event.ordinal()][slot];
+    }
+
+    public synchronized long countInHour(Event event, int hour) {
+        advance();
+        if (hour < 0 || hour > 23) return 0;
+        return hourCounts[event.ordinal()][hour];
+    }
+
+    public synchronized int getBusiestHourToday(Event event) {
+        advance();
+        long[] counts = hourCounts[event.ordinal()];
+        int busiest = -1;
+        for (int hour = 0; hour < counts.length; hour++) {
+            if (counts[hour] > 0 && (busiest < 0 || counts[hour] > counts[busiest])) {
+                busiest = hour;
+            }
+        }
+        return busiest;
+    }
+
+    public synchronized long getTotal(Event event) {
+        return totals[event.ordinal()];
+    }
+
+    public Clock getClock() { return clock; }
+
+    // Moves the ring forward to the current minute, stamping every skipped slot
+    private void advance() {
+        long nowMinute = epochMinute();
+        if (nowMinute <= currentMinute) return;
+
+        long from = Math.max(currentMinute + 1, nowMinute - MINUTES_PER_DAY + 1);
+        for (long minute = from; minute <= nowMinute; minute++) {
+            stampMinute(minute);
+        }
+        currentMinute = nowMinute;
+        currentHour = hourOf(nowMinute);
+
+        LocalDate today = dayOf(nowMinute);
+        if (!today.equals(currentDay)) {
+            rollOverDay(today);
+        }
+    }
+
+    private void rollOverDay(LocalDate today) {
+        currentDay = today;
+        long midnightMinute = today.atStartOfDay(zone).toEpochSecond() / 60;
+        int slot = slotOf(midnightMinute);
+        for (int e = 0; e < EVENT_COUNT; e++) {
+            // Totals as they stood at midnight, or now if the ring no longer covers it
+            dayBase[e] = minuteStamp[slot] == midnightMinute ? minuteBase[e][slot] : totals[e];
+            Arrays.fill(hourCounts[e], 0);
+        }
+    }
+
+    private void stampMinute(long minute) {
+        int slot = slotOf(minute);
+        minuteStamp[slot] = minute;
+        for (int e = 0; e < EVENT_COUNT; e++) {
+            minuteBase[e][slot] = totals[e];
+        }
+    }
+
+    private long epochMinute() {
+        return Math.floorDiv(clock.millis(), 60_000L);
+    }
+
+    private int slotOf(long minute) {
+        return (int) Math.floorMod(minute, (long) MINUTES_PER_DAY);
+    }
+
+    private LocalDate dayOf(long minute) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(minute * 60), zone).toLocalDate();
+    }
+
+    private int hourOf(long minute) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(minute * 60), zone).getHour();
+    }
+}
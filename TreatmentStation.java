@@ -0,0 +1,84 @@
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TreatmentStation {
+    public enum State { IDLE, CALLING, TREATING }
+
+    private final String name;
+    private final Set<PatientType> eligibleTypes;
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+    private final AtomicLong patientsTreated = new AtomicLong();
+    // Patient and start time change together, so readers never see one without the other
+    private volatile Treatment current;
+
+    public static final class Treatment {
+        private final Patient patient;
+        private final LocalDateTime start;
+
+        Treatment(Patient patient, LocalDateTime start) {
+            this.patient = patient;
+            this.start = start;
+        }
+
+        public Patient getPatient() { return patient; }
+        public LocalDateTime getStart() { return start; }
+    }
+
+    public TreatmentStation(String name, Set<PatientType> eligibleTypes) {
+        if (eligibleTypes.isEmpty()) {
+            throw new IllegalArgumentException("Station " + name + " must accept at least one patient type.");
+        }
+        this.name = name;
+        this.eligibleTypes = Collections.unmodifiableSet(EnumSet.copyOf(eligibleTypes));
+    }
+
+    public static TreatmentStation general(String name) {
+        return new TreatmentStation(name, EnumSet.allOf(PatientType.class));
+    }
+
+    public static TreatmentStation emergencyOnly(String name) {
+        return new TreatmentStation(name, EnumSet.of(PatientType.EMERGENCY));
+    }
+
+    // Only one caller can move an idle station into CALLING
+    boolean tryBeginCall() {
+        return state.compareAndSet(State.IDLE, State.CALLING);
+    }
+
+    void cancelCall() {
+        state.compareAndSet(State.CALLING, State.IDLE);
+    }
+
+    void startTreatment(Patient patient, LocalDateTime now) {
+        current = new Treatment(patient, now);
+        state.set(State.TREATING);
+    }
+
+    // Returns the patient that was being treated, or null if the station was not treating
+    Patient finishTreatment() {
+        // Hold the station in CALLING while clearing so a new call cannot interleave
+        if (!state.compareAndSet(State.TREATING, State.CALLING)) {
+            return null;
+        }
+        Patient patient = current.getPatient();
+        current = null;
+        patientsTreated.incrementAndGet();
+        state.set(State.IDLE);
+        return patient;
+    }
+
+    public boolean accepts(PatientType type) { return eligibleTypes.contains(type); }
+
+    // Getters
+    public String getName() { return name; }
+    public Set<PatientType> getEligibleTypes() { return eligibleTypes; }
+    public State getState() { return state.get(); }
+    public boolean isIdle() { return state.get() == State.IDLE; }
+    // Null while the station is free
+    public Treatment getCurrentTreatment() { return current; }
+    public long getPatientsTreated() { return patientsTreated.get(); }
+}
@@ -0,0 +1,329 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Streams the waiting room to display boards as Server-Sent Events: a full snapshot on
+// connect, then only changes. Changes are coalesced for a short interval and encoded
+// once per batch, however many boards are listening.
+public class WaitingRoomFeed implements QueueListener, Closeable {
+    private static final long COALESCE_MILLIS = 100;
+    private static final long KEEPALIVE_MILLIS = 15_000;
+    private static final int HISTORY_BATCHES = 1024;
+    private static final int SUBSCRIBER_BACKLOG = 256;
+
+    private final PatientManagement patientManagement;
+    private final HttpServer server;
+    private final Thread publisher;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Guarded by this: changes since the last batch, keyed by patient sequence
+    private final Map<Long, Delta> pending = new LinkedHashMap<>();
+    private final Deque<Batch> history = new ArrayDeque<>();
+    private long version = 0;
+
+    private volatile boolean running = true;
+
+    private static final class Delta {
+        final String op;
+        final Patient patient;
+        final PatientType type;
+
+        Delta(String op, Patient patient) {
+            this.op = op;
+            this.patient = patient;
+            this.type = patient.getType();
+        }
+    }
+
+    private static final class Batch {
+        final long version;
+        final byte[] event;
+
+        Batch(long version, byte[] event) {
+            this.version = version;
+            this.event = event;
+        }
+    }
+
+    // Each board is served by its own handler thread draining this queue
+    private static final class Subscriber {
+        final BlockingQueue<byte[]> outbox = new ArrayBlockingQueue<>(SUBSCRIBER_BACKLOG);
+        volatile boolean overflowed = false;
+    }
+
+    public WaitingRoomFeed(PatientManagement patientManagement, int port) throws IOException {
+        this.patientManagement = patientManagement;
+        // Loopback only: the board shows patient names, so it is not published on the network
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/events", this::handleEvents);
+        server.createContext("/", this::handleBoard);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "waiting-room-feed");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        patientManagement.addQueueListener(this);
+
+        publisher = new Thread(this::publishLoop, "waiting-room-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    // Queue listener callbacks; a patient that comes and goes within one batch is never sent
+
+    @Override
+    public synchronized void onPatientQueued(Patient patient) {
+        pending.put(patient.getSequence(), new Delta("enqueued", patient));
+    }
+
+    @Override
+    public void onPatientCalled(Patient patient) {
+        left("called", patient);
+    }
+
+    @Override
+    public void onPatientRemoved(Patient patient) {
+        left("removed", patient);
+    }
+
+    @Override
+    public synchronized void onPatientTypeChanged(Patient patient, PatientType oldType) {
+        Delta earlier = pending.get(patient.getSequence());
+        String op = earlier != null && earlier.op.equals("enqueued") ? "enqueued" : "moved";
+        pending.put(patient.getSequence(), new Delta(op, patient));
+    }
+
+    private synchronized void left(String op, Patient patient) {
+        Delta earlier = pending.remove(patient.getSequence());
+        if (earlier == null || !earlier.op.equals("enqueued")) {
+            pending.put(patient.getSequence(), new Delta(op, patient));
+        }
+    }
+
+    private void publishLoop() {
+        long lastSent = patientManagement.getClock().millis();
+        while (running) {
+            try {
+                Thread.sleep(COALESCE_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            byte[] event = publishPending();
+            long now = patientManagement.getClock().millis();
+            if (event == null && now - lastSent >= KEEPALIVE_MILLIS) {
+                // Comment lines keep proxies from closing idle connections
+                event = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+            }
+            if (event != null) {
+                deliver(event);
+                lastSent = now;
+            }
+        }
+    }
+
+    private synchronized byte[] publishPending() {
+        if (pending.isEmpty()) return null;
+
+        version++;
+        StringBuilder data = new StringBuilder(64 * pending.size());
+        data.append("{\"version\":").append(version).append(",\"changes\":[");
+        boolean first = true;
+        for (Delta delta : pending.values()) {
+            if (!first) data.append(',');
+            first = false;
+            data.append("{\"op\":\"").append(delta.op).append("\",");
+            appendPatient(data, delta.patient, delta.type);
+            data.append('}');
+        }
+        data.append("]}");
+        pending.clear();
+
+        byte[] event = encodeEvent("delta", version, data);
+        history.addLast(new Batch(version, event));
+        if (history.size() > HISTORY_BATCHES) {
+            history.removeFirst();
+        }
+        return event;
+    }
+
+    private void deliver(byte[] event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.outbox.offer(event)) {
+                // Too slow to keep up; the board reconnects and starts from a fresh snapshot
+                subscriber.overflowed = true;
+            }
+        }
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        Subscriber subscriber = new Subscriber();
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(register(subscriber, lastEventId));
+            out.flush();
+            while (running && !subscriber.overflowed) {
+                byte[] event = subscriber.outbox.poll(1, TimeUnit.SECONDS);
+                if (event == null) continue;
+                out.write(event);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Board went away
+        } finally {
+            subscribers.remove(subscriber);
+            exchange.close();
+        }
+    }
+
+    // Under the feed lock, so no batch is published between the catch-up and the subscription
+    private synchronized byte[] register(Subscriber subscriber, String lastEventId) {
+        byte[] catchUp = catchUpSince(lastEventId);
+        subscribers.add(subscriber);
+        return catchUp != null ? catchUp : snapshot();
+    }
+
+    // Replays missed batches for a reconnecting board, or null if they are no longer kept
+    private byte[] catchUpSince(String lastEventId) {
+        if (lastEventId == null) return null;
+        long seen;
+        try {
+            seen = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (seen > version || (seen < version && (history.isEmpty() || history.peekFirst().version > seen + 1))) {
+            return null;
+        }
+
+        StringBuilder missed = new StringBuilder();
+        for (Batch batch : history) {
+            if (batch.version > seen) missed.append(new String(batch.event, StandardCharsets.UTF_8));
+        }
+        return missed.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Patients in each lane's arrival order; changes still pending may repeat in the next
+    // batch, so boards apply changes idempotently by sequence number
+    private byte[] snapshot() {
+        StringBuilder data = new StringBuilder(4096);
+        data.append("{\"version\":").append(version).append(",\"patients\":[");
+        boolean first = true;
+        for (Patient patient : (Iterable<Patient>) patientManagement.allPatients()::iterator) {
+            if (!first) data.append(',');
+            first = false;
+            data.append('{');
+            appendPatient(data, patient, patient.getType());
+            data.append('}');
+        }
+        data.append("]}");
+        return encodeEvent("snapshot", version, data);
+    }
+
+    private static byte[] encodeEvent(String name, long version, CharSequence data) {
+        return ("id: " + version + "\nevent: " + name + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendPatient(StringBuilder data, Patient patient, PatientType type) {
+        data.append("\"seq\":").append(patient.getSequence())
+            .append(",\"name\":");
+        appendJsonString(data, patient.getName());
+        data.append(",\"type\":\"").append(type.name()).append('"')
+            .append(",\"arrival\":\"");
+        TimestampFormatter.appendTo(data, patient.getArrivalTime());
+        data.append('"');
+    }
+
+    static void appendJsonString(StringBuilder data, String value) {
+        data.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                data.append('\\').append(c);
+            } else if (c < 0x20) {
+                data.append(String.format("\\u%04x", (int) c));
+            } else {
+                data.append(c);
+            }
+        }
+        data.append('"');
+    }
+
+    // Minimal board page that follows the feed with EventSource
+    private void handleBoard(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] page = BOARD_PAGE.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, page.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(page);
+        }
+    }
+
+    private static final String BOARD_PAGE = String.join("\n",
+        "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Waiting Room</title>",
+        "<style>body{font-family:sans-serif;background:#111;color:#eee}h2{margin-bottom:4px}",
+        ".EMERGENCY{color:#f55}.SENIOR{color:#fa3}.REGULAR{color:#59f}</style></head><body>",
+        "<div id=\"lanes\"></div><script>",
+        "const patients = new Map();",
+        "function render() {",
+        "  let html = '';",
+        "  for (const type of ['EMERGENCY', 'SENIOR', 'REGULAR']) {",
+        "    const lane = [...patients.values()].filter(p => p.type === type)",
+        "      .sort((a, b) => a.arrival.localeCompare(b.arrival) || a.seq - b.seq);",
+        "    html += '<h2 class=\"' + type + '\">' + type + ' (' + lane.length + ')</h2><ol>';",
+        "    for (const p of lane) html += '<li>' + p.name.replace(/</g, '&lt;') + '</li>';",
+        "    html += '</ol>';",
+        "  }",
+        "  document.getElementById('lanes').innerHTML = html;",
+        "}",
+        "const source = new EventSource('/events');",
+        "source.addEventListener('snapshot', e => {",
+        "  patients.clear();",
+        "  for (const p of JSON.parse(e.data).patients) patients.set(p.seq, p);",
+        "  render();",
+        "});",
+        "source.addEventListener('delta', e => {",
+        "  for (const c of JSON.parse(e.data).changes) {",
+        "    if (c.op === 'called' || c.op === 'removed') patients.delete(c.seq); else patients.set(c.seq, c);",
+        "  }",
+        "  render();",
+        "});",
+        "</script></body></html>");
+
+    @Override
+    public void close() {
+        running = false;
+        patientManagement.removeQueueListener(this);
+        publisher.interrupt();
+        server.stop(0);
+    }
+
+    public int getSubscriberCount() { return subscribers.size(); }
+    public synchronized long getVersion() { return version; }
+    public int getPort() { return server.getAddress().getPort(); }
+}
@@ -0,0 +1,16 @@
+// Holds new arrivals in the overflow waitlist of the lane they asked for, in arrival order,
+// until a slot frees up. Type changes and transfers are rejected instead.
+public class WaitlistWhenFullPolicy implements AdmissionPolicy {
+    @Override
+    public String getName() { return "Overflow waitlist"; }
+
+    @Override
+    public AdmissionDecision onFull(Patient patient, PatientType requested, AdmissionController.Intent intent,
+                                    AdmissionController admission) {
+        String reason = admission.fullReason(requested, intent);
+        if (intent != AdmissionController.Intent.ARRIVAL) {
+            return AdmissionDecision.rejected(requested, reason);
+        }
+        return AdmissionDecision.waitlisted(requested, reason);
+    }
+}